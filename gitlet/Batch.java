@@ -0,0 +1,121 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Runs a script of commands in one process against one loaded
+ *  repository. The branches are read once before the first command and
+ *  written back, with the stat cache, once after the last, so a script
+ *  of N commands costs one start-up and one save instead of N.
+ *
+ *  A script has one command per line, written as it would be typed to
+ *  the shell without the leading "gitlet": words are separated by
+ *  blanks, and a word may be quoted with '...', or with "..." inside
+ *  which a backslash escapes the next character. Blank lines and lines
+ *  starting with '#' are ignored. For instance
+ *
+ *      add a.txt b.txt
+ *      commit "Add a and b"
+ *
+ *  If a daemon is serving the repository, each command is handed to it
+ *  instead, since it already keeps the repository loaded.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Batch {
+
+    /** Runs the script in the file NAME, or on the standard input if
+     *  NAME is null.
+     *  @param  name  the name of the script file, or null */
+    static void run(String name) {
+        try (InputStream in = name == null ? System.in
+                 : new FileInputStream(name)) {
+            run(new BufferedReader(new InputStreamReader(in, UTF_8)));
+        } catch (IOException excp) {
+            Main.error("Cannot read %s.", name == null ? "input" : name);
+        }
+    }
+
+    /** Runs each command read from SCRIPT in turn, then saves the
+     *  repository. If a command fails, the script stops there, the line
+     *  is reported, and the repository is saved as the command before it
+     *  left it, so that the commits already made are kept but nothing of
+     *  the failed command is. */
+    private static void run(BufferedReader script) throws IOException {
+        Tree tree = null;
+        Refs done = null;
+        int number = 0;
+        try {
+            String line;
+            while ((line = script.readLine()) != null) {
+                number += 1;
+                String[] args = split(line);
+                if (args.length == 0 || Daemon.forward(args)) {
+                    continue;
+                }
+                CommandInterpreter interp = new CommandInterpreter(args, tree);
+                interp.execute();
+                tree = interp.tree();
+                if (tree != null) {
+                    done = tree.snapshot();
+                }
+            }
+        } catch (RuntimeException excp) {
+            Main.error("Line %d failed: %s", number,
+                       excp.getMessage() == null ? excp : excp.getMessage());
+        } finally {
+            if (done != null) {
+                tree.save(done);
+            }
+            StatCache.saveIfChanged();
+        }
+    }
+
+    /** Returns the words of the script line LINE, or none if it is blank
+     *  or a comment. */
+    static String[] split(String line) {
+        ArrayList<String> words = new ArrayList<String>();
+        if (line.trim().startsWith("#")) {
+            return new String[0];
+        }
+        StringBuilder word = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    i += 1;
+                    word.append(line.charAt(i));
+                } else {
+                    word.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                } else {
+                    word.append(c);
+                }
+            }
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+}
@@ -0,0 +1,206 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** A set of small non-negative integers, such as the positions of
+ *  objects in a pack, as a growable array of 64-bit words.
+ *
+ *  In memory the words are kept as they are, so unions, differences and
+ *  counts are plain loops over arrays. When stored they are compressed
+ *  in the manner of EWAH: the words are written as a series of groups,
+ *  each a marker word followed by literal words. A marker holds, from
+ *  its low bit up, the value of a run of words that are all zeros or
+ *  all ones (1 bit), the length of that run (32 bits) and the number of
+ *  literal words after it (31 bits). Sets of reachable objects are made
+ *  of long runs, and shrink to a small fraction of their size.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+final class Bitmap {
+
+    /** An empty set. */
+    Bitmap() {
+        _words = new long[0];
+    }
+
+    /** A set whose words are WORDS. */
+    private Bitmap(long[] words) {
+        _words = words;
+    }
+
+    /** Returns a copy of this set.
+     *  @return  the copy */
+    Bitmap copy() {
+        return new Bitmap(_words.clone());
+    }
+
+    /** Adds I to this set.
+     *  @param  i  a non-negative integer */
+    void set(int i) {
+        int w = i >>> 6;
+        if (w >= _words.length) {
+            _words = Arrays.copyOf(_words, Math.max(w + 1, 2 * _words.length));
+        }
+        _words[w] |= 1L << i;
+    }
+
+    /** Returns whether I is in this set.
+     *  @param  i  a non-negative integer
+     *  @return    whether I is in this set */
+    boolean get(int i) {
+        int w = i >>> 6;
+        return w < _words.length && (_words[w] & (1L << i)) != 0;
+    }
+
+    /** Adds every member of OTHER to this set.
+     *  @param  other  a set
+     *  @return        this set */
+    Bitmap or(Bitmap other) {
+        if (other._words.length > _words.length) {
+            _words = Arrays.copyOf(_words, other._words.length);
+        }
+        for (int w = 0; w < other._words.length; w += 1) {
+            _words[w] |= other._words[w];
+        }
+        return this;
+    }
+
+    /** Removes every member of OTHER from this set.
+     *  @param  other  a set
+     *  @return        this set */
+    Bitmap andNot(Bitmap other) {
+        int n = Math.min(_words.length, other._words.length);
+        for (int w = 0; w < n; w += 1) {
+            _words[w] &= ~other._words[w];
+        }
+        return this;
+    }
+
+    /** Returns the number of members of this set.
+     *  @return  the size of this set */
+    int cardinality() {
+        int count = 0;
+        for (long word : _words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /** Returns the least member of this set that is at least FROM, or -1
+     *  if there is none.
+     *  @param  from  a non-negative integer
+     *  @return       the next member, or -1 */
+    int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= _words.length) {
+            return -1;
+        }
+        long word = _words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            w += 1;
+            if (w == _words.length) {
+                return -1;
+            }
+            word = _words[w];
+        }
+    }
+
+    /** Returns this set in stored form: the number of words and the
+     *  number of stored words as 4-byte integers, then the stored words.
+     *  @return  the stored bytes */
+    byte[] toBytes() {
+        long[] encoded = encode();
+        ByteBuffer buf = ByteBuffer.allocate(8 + 8 * encoded.length);
+        buf.putInt(_words.length).putInt(encoded.length);
+        for (long word : encoded) {
+            buf.putLong(word);
+        }
+        return buf.array();
+    }
+
+    /** Reads a set stored by toBytes() from the position of BUF, and
+     *  moves past it.
+     *  @param  buf  a buffer holding a stored set
+     *  @return      the set */
+    static Bitmap read(ByteBuffer buf) {
+        long[] words = new long[buf.getInt()];
+        int stored = buf.getInt();
+        int w = 0;
+        for (int k = 0; k < stored; ) {
+            long marker = buf.getLong();
+            k += 1;
+            long run = (marker >>> 1) & 0xffffffffL;
+            int literals = (int) (marker >>> 33);
+            if ((marker & 1) != 0) {
+                Arrays.fill(words, w, w + (int) run, -1L);
+            }
+            w += (int) run;
+            for (int i = 0; i < literals; i += 1) {
+                words[w] = buf.getLong();
+                w += 1;
+            }
+            k += literals;
+        }
+        return new Bitmap(words);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Bitmap)) {
+            return false;
+        }
+        long[] a = _words, b = ((Bitmap) obj)._words;
+        for (int w = 0; w < Math.max(a.length, b.length); w += 1) {
+            if ((w < a.length ? a[w] : 0) != (w < b.length ? b[w] : 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int n = _words.length;
+        while (n > 0 && _words[n - 1] == 0) {
+            n -= 1;
+        }
+        return Arrays.hashCode(Arrays.copyOf(_words, n));
+    }
+
+    /** Returns the words of this set in compressed form. A group covers
+     *  at least one word, so there are never more groups than words. */
+    private long[] encode() {
+        long[] out = new long[_words.length + 1];
+        int n = 0;
+        int w = 0;
+        while (w < _words.length) {
+            long fill = _words[w] == -1L ? -1L : 0L;
+            int start = w;
+            while (w < _words.length && _words[w] == fill) {
+                w += 1;
+            }
+            int run = w - start;
+            int literalStart = w;
+            while (w < _words.length && _words[w] != 0 && _words[w] != -1L) {
+                w += 1;
+            }
+            int literals = w - literalStart;
+            if (n + 1 + literals > out.length) {
+                out = Arrays.copyOf(out, Math.max(n + 1 + literals,
+                                                  2 * out.length));
+            }
+            out[n++] = (fill & 1) | ((long) run << 1)
+                | ((long) literals << 33);
+            System.arraycopy(_words, literalStart, out, n, literals);
+            n += literals;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** The members of this set, 64 to a word, lowest first. */
+    private long[] _words;
+
+}
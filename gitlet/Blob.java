@@ -1,32 +1,55 @@
 package gitlet;
 import java.io.File;
-import java.io.IOException;
 
-/** Converts all of the data to byte code using the SHA algorithm
+/** A handle on one version of a file: its name and the SHA ID of its
+ *  contents in the object store. The contents themselves are only
+ *  read when they are needed.
  *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
  */
 public class Blob {
 
+    /** Snapshots FILE under NAME, storing its contents in the object
+     *  store. The file is read once, as a stream, and hashed as it is
+     *  copied, so the id always names the contents stored. It is not read
+     *  at all if the stat cache shows it unchanged. */
     public Blob (String name, File file) {
         _name = name;
-        _bytecode = Utils.readContents(file);
-        _shaid = Utils.sha1(_bytecode);
+        _shaid = StatCache.get().store(file);
+    }
+
+    /** A handle on the stored object SHAID under NAME. */
+    public Blob (String name, ObjectId shaid) {
+        _name = name;
+        _shaid = shaid;
     }
 
     public Blob (Blob original) {
         _name = original.getName();
-        _bytecode = original.getBytes();
         _shaid = original.getSHA();
     }
 
+    /** Returns the name under which FILE is tracked: its path relative
+     *  to the working directory, with '/' between directory names.
+     *  @param  file  a working file
+     *  @return       the tracked name of FILE */
+    public static String nameOf (File file) {
+        String path = file.toPath().normalize().toString();
+        return path.replace(File.separatorChar, '/');
+    }
+
     @Override
     public boolean equals(Object obj) {
         return getSHA().equals(((Blob) obj).getSHA());
     }
 
+    @Override
+    public int hashCode() {
+        return _shaid.hashCode();
+    }
+
     /** Accessor method to the SHA ID of this blob.
      *  @return  the SHA ID of this blob */
-    public String getSHA () {
+    public ObjectId getSHA () {
         return _shaid;
     }
 
@@ -36,35 +59,27 @@ public class Blob {
         return _name;
     }
 
-    /** Accessor method to the bytecode of this blob.
+    /** Reads the bytecode of this blob from the object store. It is
+     *  not kept, so callers should hold on to it only as long as needed.
      *  @return  the bytecode of this blob*/
     public byte[] getBytes () {
-        return _bytecode;
+        return ObjectStore.read(_shaid);
     }
 
-    /** Writes this blob to the file of this name. */
+    /** Writes this blob to the file of this name, streaming its
+     *  contents from the object store. */
     public void writeBlob () {
         File file = new File(this.getName());
-        try {
-            file.createNewFile();
-        } catch (IOException io) {
-            System.out.println("WRITE BLOB");
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
         }
-        Utils.writeContents(file, _bytecode);
-    }
-
-    /** Writes this blob to the specified file. */
-    public void writeBlob (File file) {
-        Utils.writeContents(file, _bytecode);
+        ObjectStore.copyTo(_shaid, file);
     }
 
     /** The SHA ID that corresponds to this file bytecode. */
-    private String _shaid;
+    private ObjectId _shaid;
 
     /** The name of this file. */
     private String _name;
 
-    /** The bytecode of the blob. */
-    private byte[] _bytecode;
-
 }
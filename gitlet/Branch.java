@@ -1,43 +1,35 @@
 package gitlet;
 
 import java.io.File;
-import java.io.Serializable;
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
 
 /**
- * This class represents a branch in gitlet, and contains all of the
- * commits contained in the specified branch.
+ * This class represents a branch in gitlet: a named head commit and
+ * the commit in progress on top of it.
  * @author Divya Chandrasekaran, Ilina Bhaya Grossman
  */
-public class Branch implements Serializable{
-    /**The parent of the commit, or the split point. */
-    Commit parent;
-
+public class Branch {
     /**The current head of the branch. */
     Commit head;
     
     /**The commit in progress .*/
     Commit workingCommit;
     
-    /**Linked list of the all the commits. */
-    LinkedList<Commit> commits = new LinkedList<Commit>();
-    
     /**Name of the current branch. */
     String name;
     
-    /**Time stamp */
-    Instant timeStamp;
-    
     public Branch(Commit parent, String name) {
-        this.parent = parent;
         this.head = parent;
-        commits.add(parent);
         this.name = name;
         this.workingCommit = new Commit(head);
-        timeStamp = Instant.now(); 
+    }
+
+    /**A branch read back from the refs file. Neither its head nor
+     * its staged files are read until they are needed.
+     * @ref The stored branch */
+    Branch(Refs.Ref ref) {
+        this.head = Commit.read(ref.head);
+        this.name = ref.name;
+        this.workingCommit = new Commit(ref.head, ref.staged);
     }
     
     /**Adds a commit to the branch. Assumes that
@@ -46,12 +38,21 @@ public class Branch implements Serializable{
     void addCommit(String name){
         workingCommit.setMessage(name);
         workingCommit.update();
-        commits.addFirst(workingCommit);
+        workingCommit.writeToGitlet();
         head = workingCommit;
         workingCommit = new Commit(head);
+        head.release();
     }
     
     
+    /**Moves the head of this branch to an existing commit
+     * and starts a new working commit from it.
+     * @commit The new head of the branch */
+    void moveHead(Commit commit) {
+        head = commit;
+        workingCommit = new Commit(head);
+    }
+    
     /**
      * Stages a blob
      * @blob Blob to be staged
@@ -81,46 +82,13 @@ public class Branch implements Serializable{
      * @file to be removed from staging area
      */
     void remove(File file) {
-        workingCommit.remove(file.getName());
-    }
-    
-    /**Finds the corresponding commit.Assumes that
-     * the commit is contained in the list.
-     * @id SHA id of the commit.
-     * @return Commit corresponding to value. Else null.
-     */
-    Commit find(String id){
-        Iterator<Commit> it = commits.iterator();
-        while (it.hasNext()) {
-            Commit next = it.next();
-            if (id.equals(next.getSHA())) {
-                return next;
-            }
-        }
-        throw new IllegalArgumentException("No such commit in this branch");
-    }
-    
-    /**Finds a list of commits with corresponding
-     * commit message.Assumes that at least one is present.
-     * @message message that is associated with the commit
-     * @return List of commits that contain that commit
-     */
-    ArrayList<Commit> findCommits(String message){
-        ArrayList<Commit> commits = new ArrayList<Commit>();
-        Iterator<Commit> it = commits.iterator();
-        while (it.hasNext()) {
-            Commit next = it.next();
-            if (message.equals(next.getMessage())) {
-                commits.add(next);
-            }
-        }
-        return commits;
+        workingCommit.remove(Blob.nameOf(file));
     }
     
     /**Retrieves all files from the current commit
-     * @return List of Blobs. 
+     * @return Manifest of Blobs.
      */
-    ArrayList<Blob> currentFiles() {
+    Manifest currentFiles() {
         return head.getBlobs();
     }
     
@@ -132,28 +100,16 @@ public class Branch implements Serializable{
     @Override
     public boolean equals(Object obj) {
         Branch other = (Branch) obj;
-        return other.commits.equals(commits)
+        return other.head.getSHA().equals(head.getSHA())
                 && other.name.equals(name);
         
     }
     
-    public int compareTo(Branch branch) {
-        if (this.timeStamp.isBefore(branch.timeStamp)) {
-            return -1;
-        } else if (this.timeStamp.isAfter((branch.timeStamp))) {
-            return 1;
-        } else {
-            return 0;
-        }
-    }
-    
-    @Override 
-    public String toString() {
-        String holder = "";
-        for (Commit com: commits) {
-            holder += commits.toString();
-        }
-        return holder;
+    /**Returns a lazy walk over the log of this branch: its head and
+     * each of its first parents back to the initial commit.
+     * @return The walk */
+    History history() {
+        return History.firstParents(head.getSHA());
     }
 
 }
@@ -0,0 +1,173 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/** Snapshots many working files at once. Operands may name files,
+ *  directories, which are walked recursively, or glob patterns, which
+ *  are matched against every path under the working directory. The walk
+ *  and the hashing and storing of files run as fork-join tasks, so they
+ *  use every core.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class BulkAdd {
+
+    /** The most files one task hashes before splitting its work. */
+    private static final int FILES_PER_TASK = 32;
+
+    /** Returns a blob for every file named by OPERANDS, with its contents
+     *  stored in the object store, and adds to MISSING each operand that
+     *  names no file or directory, or is a pattern that matches no file.
+     *  The blobs are returned in no particular order, ready to be staged
+     *  in one batch. Directories that cannot be read are skipped.
+     *  @param  operands  file names, directory names or glob patterns
+     *  @param  missing   the list the missing operands are added to
+     *  @return           the snapshots of the files */
+    static ArrayList<Blob> snapshot(List<String> operands,
+                                    List<String> missing) {
+        ArrayList<Blob> blobs = new ArrayList<Blob>();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (String operand : operands) {
+            if (isGlob(operand)) {
+                PathMatcher matcher = FileSystems.getDefault()
+                    .getPathMatcher("glob:" + Blob.nameOf(new File(operand)));
+                ArrayList<Blob> matched =
+                    pool.invoke(new Walk(new File("."), matcher));
+                if (matched.isEmpty()) {
+                    missing.add(operand);
+                }
+                blobs.addAll(matched);
+            } else {
+                File file = new File(operand);
+                if (file.isDirectory()) {
+                    blobs.addAll(pool.invoke(new Walk(file, null)));
+                } else if (file.isFile()) {
+                    blobs.add(new Blob(Blob.nameOf(file), file));
+                } else {
+                    missing.add(operand);
+                }
+            }
+        }
+        return blobs;
+    }
+
+    /** Returns the tracked name of every file under the working
+     *  directory, in order, walking directories as snapshot does: the
+     *  .gitlet directory and directories that cannot be read are
+     *  skipped.
+     *  @return  the names of the working files */
+    static ArrayList<String> workingFiles() {
+        ArrayList<String> names = new ArrayList<String>();
+        list(new File("."), names);
+        Collections.sort(names);
+        return names;
+    }
+
+    /** Adds the tracked name of every file under DIR to NAMES. */
+    private static void list(File dir, List<String> names) {
+        List<String> dirs = Utils.directoriesIn(dir);
+        List<String> files = Utils.plainFilenamesIn(dir);
+        if (dirs == null || files == null) {
+            return;
+        }
+        for (String name : files) {
+            names.add(Blob.nameOf(new File(dir, name)));
+        }
+        for (String name : dirs) {
+            if (!name.equals(".gitlet")) {
+                list(new File(dir, name), names);
+            }
+        }
+    }
+
+    /** Returns whether OPERAND is a glob pattern rather than a path. */
+    private static boolean isGlob(String operand) {
+        return operand.indexOf('*') >= 0 || operand.indexOf('?') >= 0
+            || operand.indexOf('[') >= 0 || operand.indexOf('{') >= 0;
+    }
+
+    /** Snapshots the files under one directory that match a pattern. */
+    private static class Walk extends RecursiveTask<ArrayList<Blob>> {
+
+        /** The version of the serialized form of a walk. */
+        private static final long serialVersionUID = 1L;
+
+        /** Snapshots the files under DIR whose names match MATCHER, or
+         *  all of them if MATCHER is null. */
+        Walk(File dir, PathMatcher matcher) {
+            _dir = dir;
+            _matcher = matcher;
+        }
+
+        @Override
+        protected ArrayList<Blob> compute() {
+            ArrayList<RecursiveTask<ArrayList<Blob>>> tasks =
+                new ArrayList<RecursiveTask<ArrayList<Blob>>>();
+            List<String> dirs = Utils.directoriesIn(_dir);
+            List<String> names = Utils.plainFilenamesIn(_dir);
+            if (dirs == null || names == null) {
+                return new ArrayList<Blob>();
+            }
+            for (String name : dirs) {
+                if (!name.equals(".gitlet")) {
+                    tasks.add(new Walk(new File(_dir, name), _matcher));
+                }
+            }
+            ArrayList<File> files = new ArrayList<File>();
+            for (String name : names) {
+                File file = new File(_dir, name);
+                if (_matcher == null
+                    || _matcher.matches(Paths.get(Blob.nameOf(file)))) {
+                    files.add(file);
+                }
+            }
+            for (int i = 0; i < files.size(); i += FILES_PER_TASK) {
+                tasks.add(new Hash(files.subList(i, Math.min(files.size(),
+                                                 i + FILES_PER_TASK))));
+            }
+            ArrayList<Blob> blobs = new ArrayList<Blob>();
+            for (RecursiveTask<ArrayList<Blob>> task : invokeAll(tasks)) {
+                blobs.addAll(task.join());
+            }
+            return blobs;
+        }
+
+        /** The directory to walk. */
+        private final File _dir;
+
+        /** The pattern paths must match, or null. */
+        private final PathMatcher _matcher;
+    }
+
+    /** Snapshots a list of files. */
+    private static class Hash extends RecursiveTask<ArrayList<Blob>> {
+
+        /** The version of the serialized form of a hash task. */
+        private static final long serialVersionUID = 1L;
+
+        /** Snapshots FILES. */
+        Hash(List<File> files) {
+            _files = files;
+        }
+
+        @Override
+        protected ArrayList<Blob> compute() {
+            ArrayList<Blob> blobs = new ArrayList<Blob>();
+            for (File file : _files) {
+                blobs.add(new Blob(Blob.nameOf(file), file));
+            }
+            return blobs;
+        }
+
+        /** The files to snapshot. */
+        private final List<File> _files;
+    }
+
+}
@@ -0,0 +1,350 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** For every commit in the commit graph, a Bloom filter of the paths it
+ *  changed relative to its first parent: the files added, removed or
+ *  modified, and every directory holding one of them. A filter can
+ *  answer that a commit certainly did not change a path, so a history
+ *  of one path only needs to compare the manifests of the few commits
+ *  whose filters let the path through.
+ *
+ *  The filters are kept in .gitlet/changed-paths: an 8-byte header and
+ *  then, in the order they were written, one record per filter: the id
+ *  of its commit, the length of the filter in bytes as a 4-byte integer,
+ *  and the filter. Each path sets NUM_HASHES bits of a filter with about
+ *  BITS_PER_PATH bits per path, and at least MIN_BYTES bytes in all.
+ *  The file .gitlet/changed-paths-table is next to the commit graph and
+ *  in the same order: an 8-byte header and then for each commit the
+ *  offset of its record as a 4-byte integer. An offset of -1 marks a
+ *  commit whose filter is not known, or that changed too many paths for
+ *  a filter to be worth keeping; such a commit may have changed any
+ *  path. Both files are mapped and read in place, and only appended to.
+ *  A record is only used if it holds the id of its commit and lies
+ *  wholly within the file, so one cut short by a crash, or one a table
+ *  points to while gc replaces the two files, counts as unknown.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class ChangedPaths {
+
+    /** The file holding the filters. */
+    static final File FILE = new File(".gitlet", "changed-paths");
+
+    /** The file holding the offset of the filter of each commit. */
+    static final File TABLE = new File(".gitlet", "changed-paths-table");
+
+    /** The first four bytes of the filter file. */
+    private static final int MAGIC = 0x424c4f4d;
+
+    /** The first four bytes of the table file. */
+    private static final int TABLE_MAGIC = 0x424c5442;
+
+    /** The version of the file formats. */
+    private static final int VERSION = 2;
+
+    /** The size of the header of each file in bytes. */
+    private static final int HEADER_SIZE = 8;
+
+    /** The offset of a filter that lets every path through. */
+    private static final int UNKNOWN = -1;
+
+    /** The number of bits set for each path. */
+    private static final int NUM_HASHES = 7;
+
+    /** The number of bits in a filter for each path it holds. */
+    private static final int BITS_PER_PATH = 10;
+
+    /** The smallest size of a filter that holds any paths, in bytes;
+     *  smaller filters let too many other paths through. */
+    private static final int MIN_BYTES = 8;
+
+    /** The largest number of paths kept in a filter. */
+    private static final int MAX_PATHS = 512;
+
+    /** Returns the filters of the repository in the current directory,
+     *  mapping them the first time they are needed.
+     *  @return  the changed-path filters */
+    static ChangedPaths get() {
+        if (_paths == null) {
+            _paths = new ChangedPaths();
+            _paths.load();
+        }
+        return _paths;
+    }
+
+    /** Maps the filter and table files, if they exist. Files in an older
+     *  format are treated as missing, and are replaced by the next add. */
+    private void load() {
+        _filters = map(FILE, MAGIC);
+        _table = _filters == null ? null : map(TABLE, TABLE_MAGIC);
+        _count = _table == null ? 0 : (_table.limit() - HEADER_SIZE) / 4;
+    }
+
+    /** Adds the filter of COMMIT, which has just been added to the commit
+     *  graph, and appends it to the files. Commits of the graph that have
+     *  no filter yet are given unknown ones. The files are read again
+     *  first, so that the entries another process has appended since keep
+     *  their places, and only an entry of the table cut short is cut off.
+     *  @param  commit  a commit that has been written */
+    void add(Commit commit) {
+        ObjectId id = commit.getSHA();
+        load();
+        int pos = CommitGraph.get().position(id);
+        if (pos < _count) {
+            return;
+        }
+        boolean fresh = _table == null;
+        int offset = UNKNOWN;
+        byte[] filter = filter(commit);
+        try {
+            if (fresh) {
+                Files.deleteIfExists(TABLE.toPath());
+                Files.deleteIfExists(FILE.toPath());
+            }
+            if (filter != null) {
+                ByteBuffer record = ByteBuffer.allocate(
+                    (fresh ? HEADER_SIZE : 0) + 24 + filter.length);
+                if (fresh) {
+                    record.putInt(MAGIC).putInt(VERSION);
+                }
+                id.write(record);
+                record.putInt(filter.length).put(filter).flip();
+                try (FileChannel channel = append(FILE)) {
+                    offset = (int) channel.size() + (fresh ? HEADER_SIZE : 0);
+                    write(channel, record);
+                }
+            }
+            try (FileChannel channel = append(TABLE)) {
+                int count = 0;
+                if (!fresh) {
+                    long size = channel.size();
+                    count = (int) ((size - HEADER_SIZE) / 4);
+                    if (size > HEADER_SIZE + 4L * count) {
+                        channel.truncate(HEADER_SIZE + 4L * count);
+                    }
+                }
+                if (pos >= count) {
+                    ByteBuffer entries = ByteBuffer.allocate(
+                        (fresh ? HEADER_SIZE : 0) + 4 * (pos - count + 1));
+                    if (fresh) {
+                        entries.putInt(TABLE_MAGIC).putInt(VERSION);
+                    }
+                    for (int p = count; p < pos; p += 1) {
+                        entries.putInt(UNKNOWN);
+                    }
+                    entries.putInt(offset).flip();
+                    write(channel, entries);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        load();
+    }
+
+    /** Rewrites the files with the filters of only the commits of the
+     *  commit graph in LIVE, keeping them in line with the graph that
+     *  CommitGraph.retain(LIVE) writes. Must be called before the graph
+     *  is rewritten.
+     *  @param  live  the ids of the commits to keep */
+    static void retain(Set<ObjectId> live) {
+        ChangedPaths paths = get();
+        CommitGraph graph = CommitGraph.get();
+        ByteArrayOutputStream filters = new ByteArrayOutputStream();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        write(filters, ByteBuffer.allocate(HEADER_SIZE)
+              .putInt(MAGIC).putInt(VERSION));
+        write(table, ByteBuffer.allocate(HEADER_SIZE)
+              .putInt(TABLE_MAGIC).putInt(VERSION));
+        for (int pos = 0; pos < graph.size(); pos += 1) {
+            ObjectId id = graph.id(pos);
+            if (!live.contains(id)) {
+                continue;
+            }
+            int offset = paths.offset(pos, id);
+            if (offset == UNKNOWN) {
+                write(table, ByteBuffer.allocate(4).putInt(UNKNOWN));
+                continue;
+            }
+            int length = 24 + paths._filters.getInt(offset + 20);
+            write(table, ByteBuffer.allocate(4).putInt(filters.size()));
+            byte[] record = new byte[length];
+            paths._filters.get(offset, record);
+            filters.write(record, 0, length);
+        }
+        replace(FILE, filters.toByteArray());
+        replace(TABLE, table.toByteArray());
+        _paths = null;
+    }
+
+    /** Returns whether the commit ID may have changed the file or
+     *  directory PATH relative to its first parent. A false answer is
+     *  always right; a true one must be checked against the manifests.
+     *  @param  id    a commit id
+     *  @param  path  a file or directory name, without a trailing '/'
+     *  @return       whether ID may have changed PATH */
+    boolean mayChange(ObjectId id, String path) {
+        int offset = offset(CommitGraph.get().position(id), id);
+        if (offset == UNKNOWN) {
+            return true;
+        }
+        int length = _filters.getInt(offset + 20);
+        if (length == 0) {
+            return false;
+        }
+        for (int bit : bits(path, length * 8)) {
+            if ((_filters.get(offset + 24 + (bit >>> 3))
+                 & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the offset of the filter of the commit ID at position POS
+     *  of the commit graph, or UNKNOWN if it has no usable one. */
+    private int offset(int pos, ObjectId id) {
+        if (pos == CommitGraph.NONE || pos >= _count) {
+            return UNKNOWN;
+        }
+        int offset = _table.getInt(HEADER_SIZE + 4 * pos);
+        if (offset < HEADER_SIZE || offset > _filters.limit() - 24
+            || !ObjectId.read(_filters, offset).equals(id)) {
+            return UNKNOWN;
+        }
+        int length = _filters.getInt(offset + 20);
+        if (length < 0 || length > _filters.limit() - offset - 24) {
+            return UNKNOWN;
+        }
+        return offset;
+    }
+
+    /** Returns the filter of the paths COMMIT changed relative to its
+     *  first parent, or null if it changed more than MAX_PATHS. */
+    static byte[] filter(Commit commit) {
+        final HashSet<String> paths = new HashSet<String>();
+        ObjectId parentID = commit.getParentID();
+        Manifest parent = parentID == null ? new Manifest()
+            : Commit.read(parentID).getBlobs();
+        Manifest.walk(new Manifest[] { parent, commit.getBlobs() },
+                      new Manifest.Visitor() {
+                public boolean skip(ObjectId[] ids) {
+                    return ids[0] == null ? ids[1] == null
+                        : ids[0].equals(ids[1]);
+                }
+
+                public void visit(String name, Blob[] blobs) {
+                    paths.add(name);
+                    for (int k = name.lastIndexOf('/'); k > 0;
+                         k = name.lastIndexOf('/', k - 1)) {
+                        paths.add(name.substring(0, k));
+                    }
+                }
+            });
+        if (paths.size() > MAX_PATHS) {
+            return null;
+        }
+        byte[] filter = new byte[paths.isEmpty() ? 0
+            : Math.max(MIN_BYTES, (paths.size() * BITS_PER_PATH + 7) / 8)];
+        for (String path : paths) {
+            for (int bit : bits(path, filter.length * 8)) {
+                filter[bit >>> 3] |= 1 << (bit & 7);
+            }
+        }
+        return filter;
+    }
+
+    /** Returns the NUM_HASHES bits PATH sets in a filter of SIZE bits.
+     *  They are spaced by double hashing, from the two halves of a 64-bit
+     *  FNV-1a hash of the UTF-8 bytes of PATH. */
+    private static int[] bits(String path, int size) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        int[] bits = new int[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i += 1) {
+            bits[i] = Math.floorMod(h1 + i * h2, size);
+        }
+        return bits;
+    }
+
+    /** Returns FILE mapped, or null if it does not exist or is in an
+     *  older format. Its header must start with MAGIC. */
+    private static MappedByteBuffer map(File file, int magic) {
+        if (!file.isFile()) {
+            return null;
+        }
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                 StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                              channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (buf.limit() < HEADER_SIZE || buf.getInt(0) != magic
+            || buf.getInt(4) > VERSION) {
+            throw new IllegalArgumentException("bad changed-paths file");
+        }
+        return buf.getInt(4) == VERSION ? buf : null;
+    }
+
+    /** Opens FILE for appending, creating it if need be. */
+    private static FileChannel append(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.APPEND);
+    }
+
+    /** Writes the bytes of BUF to CHANNEL. */
+    private static void write(FileChannel channel, ByteBuffer buf)
+        throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /** Writes the bytes BUF holds to OUT. */
+    private static void write(ByteArrayOutputStream out, ByteBuffer buf) {
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    /** Replaces FILE with one holding CONTENTS, by renaming. */
+    private static void replace(File file, byte[] contents) {
+        try {
+            File temp = File.createTempFile("tmp_", null, file.getParentFile());
+            Utils.writeContents(temp, contents);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The filters of the repository in the current directory. */
+    private static ChangedPaths _paths;
+
+    /** The mapped filter file, or null if there is none. */
+    private MappedByteBuffer _filters;
+
+    /** The mapped table file, or null if there is none. */
+    private MappedByteBuffer _table;
+
+    /** The number of commits the table has an entry for. */
+    private int _count;
+
+}
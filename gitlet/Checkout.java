@@ -0,0 +1,139 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Moves the working directory from one commit's files to another's.
+ *  The two manifest trees are compared by id in a single walk that
+ *  passes over identical subtrees, so only the files that differ are
+ *  looked at, written or deleted, and a file is not rewritten if the
+ *  stat cache shows it already has the right contents.
+ *  Files are written by a small pool of threads, each streaming object
+ *  contents straight into its file, so a large checkout is bound by the
+ *  disk rather than by one thread copying bytes.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Checkout {
+
+    /** The most files written at once. Writing is bound by I/O, so a few
+     *  threads keep the disk busy and more only add contention. */
+    private static final int WRITERS =
+        Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /** The most files one writer task handles, so that small files do
+     *  not each pay for a task. */
+    private static final int FILES_PER_TASK = 16;
+
+    /** Plans the move of a working directory holding the files of FROM
+     *  to the files of TO. Throws IllegalArgumentException, before
+     *  anything is changed, if an untracked file would be overwritten.
+     *  @param  from  the manifest currently checked out
+     *  @param  to    the manifest to check out */
+    Checkout(Manifest from, Manifest to) {
+        Manifest.walk(new Manifest[] { from, to }, new Manifest.Visitor() {
+                public boolean skip(ObjectId[] ids) {
+                    return ids[0] == null ? ids[1] == null
+                        : ids[0].equals(ids[1]);
+                }
+
+                public void visit(String name, Blob[] blobs) {
+                    plan(name, blobs[0], blobs[1]);
+                }
+            });
+    }
+
+    /** Carries out the planned writes and deletions. */
+    void run() {
+        StatCache cache = StatCache.get();
+        for (String name : _deletes) {
+            delete(name);
+            cache.remove(name);
+        }
+        if (_writes.size() <= FILES_PER_TASK) {
+            write(_writes, cache);
+            return;
+        }
+        for (Blob b : _writes) {
+            File parent = new File(b.getName()).getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        try {
+            ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < _writes.size(); i += FILES_PER_TASK) {
+                final List<Blob> batch = _writes.subList(i,
+                    Math.min(_writes.size(), i + FILES_PER_TASK));
+                tasks.add(pool.submit(() -> write(batch, cache)));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("checkout interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause().getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Writes the files of BLOBS and records them in CACHE. */
+    private static void write(List<Blob> blobs, StatCache cache) {
+        for (Blob b : blobs) {
+            b.writeBlob();
+            cache.put(new File(b.getName()), b.getSHA());
+        }
+    }
+
+    /** Plans the change of the working file NAME from version OLD to
+     *  version NEW, either of which may be null. */
+    private void plan(String name, Blob old, Blob b) {
+        if (b == null) {
+            _deletes.add(name);
+        } else if (!hasContents(b)) {
+            if (old == null && new File(name).exists()) {
+                throw new IllegalArgumentException("There is an untracked "
+                    + "file in the way; delete it or add it first.");
+            }
+            _writes.add(b);
+        }
+    }
+
+    /** Deletes the working file NAME and any directories it leaves
+     *  empty. */
+    private static void delete(String name) {
+        File file = new File(name);
+        file.delete();
+        File dir = file.getParentFile();
+        while (dir != null && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Returns whether the working file of B already holds B's
+     *  contents, as far as the stat cache can tell without reading it
+     *  unless it has changed. */
+    private static boolean hasContents(Blob b) {
+        File file = new File(b.getName());
+        return file.isFile()
+            && StatCache.get().hash(file).equals(b.getSHA());
+    }
+
+    /** The blobs to write to the working directory. */
+    private ArrayList<Blob> _writes = new ArrayList<Blob>();
+
+    /** The names of the working files to delete. */
+    private ArrayList<String> _deletes = new ArrayList<String>();
+
+}
@@ -1,8 +1,18 @@
 package gitlet;
 
-import java.io.Serializable;
-import java.util.ArrayList;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * This class represents the command interpreter in gitlet.
@@ -11,24 +21,61 @@ import java.io.File;
 public class CommandInterpreter {
 
     public CommandInterpreter(String[] args) {
+        this(args, null);
+    }
+
+    /** An interpreter for ARGS that works on TREE, the branches of the
+     *  repository already in memory, or reads them from the refs file if
+     *  TREE is null. */
+    public CommandInterpreter(String[] args, Tree tree) {
         if (new File(".gitlet").exists()) {
             initialized = true;
         }
+        _tree = tree;
+        if (_tree == null && Refs.FILE.isFile()) {
+            _tree = Tree.load();
+        }
         _commands = args;
     }
 
+    /** Returns the tree this interpreter worked on, which is null if the
+     *  repository has not been initialized.
+     *  @return  the tree */
+    Tree tree() {
+        return _tree;
+    }
+
     /** This method processes the command that the command interpreter
-     *  is initialized with and modifies the tree accordingly. */
+     *  is initialized with and modifies the tree accordingly, then
+     *  writes the changed state of the repository back. */
     protected void processCommand() {
+        execute();
+        save();
+    }
+
+    /** Writes the branches and the stat cache back to the repository,
+     *  if they have changed. Objects, the commit graph and the message
+     *  index are written as commits are made, and need no saving. */
+    void save() {
+        if (_tree != null) {
+            _tree.save();
+        }
+        StatCache.saveIfChanged();
+    }
+
+    /** Processes the command without saving the state it changes, so
+     *  that several commands can be run before one save. */
+    void execute() {
         int numArgs = _commands.length;
         if (numArgs == 0) {
             Main.error("Please enter a command.");
+            return;
         }
 
         String command = _commands[0].toLowerCase();
         String operand = "";
         if (numArgs > 1) {
-            operand = _commands[1].toLowerCase();
+            operand = _commands[1];
         }
 
         if(command.equals("init")) {
@@ -38,42 +85,97 @@ public class CommandInterpreter {
                 case "status":
                     checkOperand(1, numArgs);
                     status();
+                    break;
                 case "log":
-                    checkOperand(1, numArgs);
-                    log();
+                    log(_tree.current.history());
+                    break;
                 case "global-log":
-                    checkOperand(1, numArgs);
-                    globalLog();
+                    log(_tree.history());
+                    break;
                 case "add":
-                    checkOperand(2, numArgs);
-                    add(operand);
+                    if (numArgs < 2) {
+                        checkOperand(2, numArgs);
+                    } else {
+                        add(Arrays.asList(_commands).subList(1, numArgs));
+                    }
+                    break;
                 case "checkout":
-                    checkOperand(2, numArgs);
-                    checkout(operand); //COMPLICATED
+                    if (numArgs == 3 && _commands[1].equals("--")) {
+                        checkoutFile(null, _commands[2]);
+                    } else if (numArgs == 4 && _commands[2].equals("--")) {
+                        checkoutFile(_commands[1], _commands[3]);
+                    } else {
+                        checkOperand(2, numArgs);
+                        checkout(operand);
+                    }
+                    break;
                 case "reset":
                     checkOperand(2, numArgs);
                     reset(operand);
+                    break;
                 case "merge":
                     checkOperand(2, numArgs);
                     merge(operand);
+                    break;
                 case "remove":
                     checkOperand(2, numArgs);
                     removeBranch(operand);
+                    break;
                 case "commit":
                     checkOperand(2, numArgs);
                     commit(operand);
+                    break;
                 case "branch":
                     checkOperand(2, numArgs);
                     branch(operand);
+                    break;
                 case "rm-branch":
                     checkOperand(2, numArgs);
                     removeBranch(operand);
+                    break;
                 case "find":
-                    checkOperand(2, numArgs);
-                    find(operand);
+                    if (numArgs == 3 && _commands[1].equals("--word")) {
+                        findWord(_commands[2]);
+                    } else {
+                        checkOperand(2, numArgs);
+                        find(operand);
+                    }
+                    break;
                 case "rm":
                     checkOperand(2, numArgs);
                     removeFile(operand);
+                    break;
+                case "repack":
+                    checkOperand(1, numArgs);
+                    repack();
+                    break;
+                case "add-remote":
+                    checkOperand(3, numArgs);
+                    if (numArgs == 3) {
+                        addRemote(_commands[1], _commands[2]);
+                    }
+                    break;
+                case "fetch":
+                    checkOperand(3, numArgs);
+                    if (numArgs == 3) {
+                        fetch(_commands[1], _commands[2]);
+                    }
+                    break;
+                case "push":
+                    checkOperand(3, numArgs);
+                    if (numArgs == 3) {
+                        push(_commands[1], _commands[2]);
+                    }
+                    break;
+                case "gc":
+                    if (numArgs == 3 && _commands[1].equals("--grace")) {
+                        gc(_commands[2]);
+                    } else if (numArgs == 1) {
+                        gc(null);
+                    } else {
+                        checkOperand(1, numArgs);
+                    }
+                    break;
                 default:
                     Main.error("No command with that name exists.");
             }
@@ -115,14 +217,23 @@ public class CommandInterpreter {
     }
 
     /** This method adds files to the staging area of the
-     *  current commit.
-     *  @param  name  the name of the file to add */
-    public void add(String name) {
-        File f = new File(name);
-        if (f.exists()) {
-            _tree.add(f);
-        } else {
+     *  current commit. Each name may be a file, a directory, all of whose
+     *  files are added, or a glob pattern. The files are hashed in
+     *  parallel and staged in one batch. Each name that matches nothing
+     *  is reported, and the files the others name are still staged.
+     *  @param  names  the names of the files to add */
+    public void add(List<String> names) {
+        ArrayList<String> missing = new ArrayList<String>();
+        ArrayList<Blob> blobs = BulkAdd.snapshot(names, missing);
+        if (names.size() == 1 && !missing.isEmpty()) {
             Main.error("File does not exist.");
+        } else {
+            for (String name : missing) {
+                Main.error("File does not exist: %s.", name);
+            }
+        }
+        if (!blobs.isEmpty()) {
+            _tree.addAll(blobs);
         }
     }
 
@@ -130,12 +241,35 @@ public class CommandInterpreter {
      * current branch with a *. Also displays what files have been
      * staged or marked for untracking. */
     public void status() {
-        //NOPE
+        System.out.print(_tree.status());
     }
 
-    /**  */
+    /** Checks out the given branch, writing only the files that
+     *  differ from the current branch.
+     *  @param  name  the name of the branch */
     public void checkout(String name) {
-        _tree.checkoutBranch(name);
+        try {
+            _tree.checkoutBranch(name);
+        } catch (IllegalArgumentException excp) {
+            Main.error(excp.getMessage());
+        }
+    }
+
+    /** Writes the version of a file in the given commit, or in the
+     *  head commit if COMMITID is null, to the working directory.
+     *  @param  commitID  the full or abbreviated commit id, or null
+     *  @param  name      the name of the file */
+    public void checkoutFile(String commitID, String name) {
+        try {
+            Blob b = _tree.checkoutFile(commitID, name);
+            if (b == null) {
+                Main.error("File does not exist in that commit.");
+            } else {
+                b.writeBlob();
+            }
+        } catch (IllegalArgumentException excp) {
+            Main.error(excp.getMessage());
+        }
     }
 
     /** Checks out all the files tracked by the given commit.
@@ -144,29 +278,86 @@ public class CommandInterpreter {
      *  node.
      *  @param  commitID  the commit id of the commit to reset */
     public void reset(String commitID) {
-        if (commitID.isEmpty()) {
-            Main.error("");
+        try {
+            _tree.reset(commitID);
+        } catch (IllegalArgumentException excp) {
+            Main.error(excp.getMessage());
         }
-
     }
 
     /** Merges files from the given branch into the current branch.
      * @param  branch  the name of the branch to merge */
     public void merge(String branch) {
-         _tree.merge(branch);
+        try {
+            _tree.merge(branch);
+        } catch (IllegalArgumentException excp) {
+            Main.error(excp.getMessage());
+        }
     }
 
-    /** Starting at the current head commit, display information
-     *  about each commit backwards along the commit tree until
-     *  the initial commit. */
-    public void log() {
-        System.out.println(_tree.current.toString());
+    /** Displays information about each commit of HISTORY, which for
+     *  log is the current head and its first parents back to the initial
+     *  commit, and for global-log is every commit ever made. Commits are
+     *  printed as they are read, so the first ones appear at once. The
+     *  operands "-n COUNT", "--since TIME" and "--until TIME" cut the
+     *  log off after COUNT commits or to the commits made in a range of
+     *  times; a TIME is "yyyy-MM-dd" or "yyyy-MM-dd HH:mm:ss". A final
+     *  "-- PATH" limits it to the commits that changed the file or
+     *  directory PATH.
+     *  @param  history  the commits to display */
+    public void log(History history) {
+        try {
+            for (int i = 1; i < _commands.length; i += 2) {
+                if (i + 1 == _commands.length) {
+                    throw new IllegalArgumentException();
+                }
+                String value = _commands[i + 1];
+                switch (_commands[i]) {
+                    case "--":
+                        if (i + 2 != _commands.length) {
+                            throw new IllegalArgumentException();
+                        }
+                        history.path(value.replaceAll("/+$", ""));
+                        break;
+                    case "-n":
+                        history.limit(Integer.parseInt(value));
+                        break;
+                    case "--since":
+                        history.since(parseTime(value, false));
+                        break;
+                    case "--until":
+                        history.until(parseTime(value, true));
+                        break;
+                    default:
+                        throw new IllegalArgumentException();
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException excp) {
+            Main.error("Incorrect operands.");
+            return;
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, UTF_8)));
+        while (history.hasNext()) {
+            out.print(history.next());
+            out.print('\n');
+        }
+        out.flush();
     }
 
-    /** Like log, except displays information about all commits
-     *  ever made. */
-    public void globalLog() {
-        System.out.println(_tree.toString());
+    /** Returns the time TEXT, a local date or date and time, in
+     *  milliseconds since the epoch. A date alone stands for the start of
+     *  the day, or for its end if END. */
+    private static long parseTime(String text, boolean end) {
+        LocalDateTime time;
+        if (text.length() == "yyyy-MM-dd".length()) {
+            LocalDate date = LocalDate.parse(text);
+            time = end ? date.plusDays(1).atStartOfDay().minusNanos(1)
+                : date.atStartOfDay();
+        } else {
+            time = LocalDateTime.parse(text.replace(' ', 'T'));
+        }
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /** Creates a new branch with the given name, and
@@ -181,21 +372,25 @@ public class CommandInterpreter {
      *  given commit message, one per line. If there are multiple
      *  such commits, it prints the ids out on separate lines.*/
     public void find (String message) {
-        ArrayList<Commit> allCommits = new ArrayList<Commit>();
-        for (Branch b: _tree.branches) {
-            try {
-                allCommits.add(b.find(message));
-            } catch (IllegalArgumentException io) {
-            }
-        }
+        printIDs(MessageIndex.get().find(message),
+                 "Found no commit with that message.");
+    }
 
-        if (!allCommits.isEmpty()) {
-            for (Commit c : allCommits) {
-                System.out.print(c.toString());
-            }
+    /** Prints out the ids of all commits whose message contains the
+     *  given word, ignoring case, one per line. */
+    public void findWord (String word) {
+        printIDs(MessageIndex.get().search(word),
+                 "Found no commit with that word in its message.");
+    }
 
-        } else {
-            Main.error("Found no commit with that message.");
+    /** Prints IDS one per line, or reports the error NONE if there are
+     *  no ids. */
+    private void printIDs (List<ObjectId> ids, String none) {
+        if (ids.isEmpty()) {
+            Main.error(none);
+        }
+        for (ObjectId id : ids) {
+            System.out.println(id);
         }
     }
 
@@ -220,6 +415,93 @@ public class CommandInterpreter {
         _tree.removeBranch(name); //ERROR IS TAKEN CARE OF
     }
 
+    /** Moves all objects into a single pack, storing each one as a
+     *  compressed delta against a similar object where that saves
+     *  space, together with bitmaps of the objects its commits reach. */
+    public void repack() {
+        PackWriter.repack();
+    }
+
+    /** Removes the objects no branch refers to any longer, and packs
+     *  the rest as repack does. Objects written less than GRACE seconds
+     *  ago, or GarbageCollector.DEFAULT_GRACE if GRACE is null, are kept,
+     *  since a command running at the same time may be using them. */
+    public void gc(String grace) {
+        long millis = GarbageCollector.DEFAULT_GRACE;
+        if (grace != null) {
+            try {
+                millis = Long.parseLong(grace) * 1000;
+            } catch (NumberFormatException excp) {
+                millis = -1;
+            }
+            if (millis < 0) {
+                Main.error("Incorrect operands.");
+                return;
+            }
+        }
+        _tree.gc(millis);
+    }
+
+    /** Saves the repository whose .gitlet directory is at PATH, with
+     *  names separated by '/', as the remote NAME. */
+    public void addRemote(String name, String path) {
+        Remotes remotes = Remotes.read();
+        if (remotes.get(name) != null) {
+            Main.error("A remote with that name already exists.");
+        } else {
+            remotes.add(name, path);
+            remotes.write();
+        }
+    }
+
+    /** Copies the branch BRANCH of the remote NAME into the branch
+     *  NAME/BRANCH, creating it if need be, and receives whatever
+     *  objects of its history are missing here. */
+    public void fetch(String name, String branch) {
+        Remote remote = remote(name);
+        if (remote == null) {
+            return;
+        }
+        ArrayList<ObjectId> heads = new ArrayList<ObjectId>();
+        for (Branch b : _tree.branches) {
+            heads.add(b.head.getSHA());
+        }
+        ObjectId head = remote.fetch(branch, heads);
+        if (head == null) {
+            Main.error("That remote does not have that branch.");
+        } else {
+            _tree.setBranch(name + "/" + branch, head);
+        }
+    }
+
+    /** Makes the head of the current branch the head of the branch
+     *  BRANCH of the remote NAME, which must be in its history, and sends
+     *  whatever objects the remote is missing. */
+    public void push(String name, String branch) {
+        Remote remote = remote(name);
+        if (remote == null) {
+            return;
+        }
+        String error = remote.push(branch, _tree.current.head.getSHA());
+        if (error != null) {
+            Main.error(error);
+        }
+    }
+
+    /** Returns the remote NAME, or null after reporting why there is
+     *  none. */
+    private Remote remote(String name) {
+        File dir = Remotes.read().get(name);
+        if (dir == null) {
+            Main.error("A remote with that name does not exist.");
+            return null;
+        } else if (!dir.isDirectory()) {
+            Main.error("Remote directory not found.");
+            return null;
+        }
+        return new Remote(dir);
+    }
+
     /** The tree that holds all made commits. */
     Tree _tree;
 
@@ -1,10 +1,14 @@
 package gitlet;
 
-import java.io.*;
+import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.text.SimpleDateFormat;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /** The commit class that saves all metadata that corresponds
  *  to a particular commit and the respective blobs. This commit
  *  represents an 'in progress' commit.
@@ -13,17 +17,14 @@ import java.text.SimpleDateFormat;
 public class Commit {
 
     public Commit (Commit parent) {
-        _blobs = new ArrayList<Blob>();
         _message = null;
         _time = null;
         _shaid = null;
-        _parent = parent;
-        if (_parent != null) {
-            for (Blob b: _parent._blobs) {
-                Blob copy = new Blob(b);
-                _blobs.add(copy);
-            }
+        if (parent != null) {
+            _parentID = parent.getSHA();
+            _blobs = new Manifest(parent.blobs());
         } else {
+            _blobs = new Manifest();
             _message = "initial commit";
         }
     }
@@ -33,6 +34,32 @@ public class Commit {
         _message = message;
     }
 
+    /** A working commit on top of the commit PARENTID, whose staged
+     *  files are the stored manifest STAGEDID. The manifest is read
+     *  only when it is needed.
+     *  @param  parentID  the SHA ID of the parent commit
+     *  @param  stagedID  the SHA ID of the staged manifest */
+    public Commit (ObjectId parentID, ObjectId stagedID) {
+        _parentID = parentID;
+        _manifestID = stagedID;
+    }
+
+    /** A commit that is in the object store under SHAID, whose record is
+     *  read when any of its fields is first needed. */
+    private Commit (ObjectId shaid) {
+        _shaid = shaid;
+        _unread = true;
+    }
+
+    /** Returns the commit with the given SHA ID in the object store.
+     *  Nothing is read until the commit's record or files are needed,
+     *  so holding a commit by its id costs nothing.
+     *  @param  id  the SHA ID of the commit
+     *  @return     the stored commit */
+    public static Commit read (ObjectId id) {
+        return new Commit(id);
+    }
+
     @Override
     public boolean equals(Object obj) {
         return getSHA().equals(((Commit) obj).getSHA());
@@ -40,6 +67,7 @@ public class Commit {
 
     @Override
     public String toString() {
+        load();
         SimpleDateFormat dateFormat = new SimpleDateFormat ("yyyy-MM-dd hh:mm:ss");
         String time = dateFormat.format(_time);
         String c = "===\n";
@@ -51,20 +79,56 @@ public class Commit {
 
     /** Accessor method to the SHA ID of this commit.
      *  @return  the SHA ID of this commit */
-    public String getSHA () {
+    public ObjectId getSHA () {
         return _shaid;
     }
 
+    /** Accessor method to the time of this commit.
+     *  @return  the time in milliseconds since the epoch */
+    public long getTime () {
+        load();
+        return _time.getTime();
+    }
+
+    /** Accessor method to the SHA ID of the manifest of this commit.
+     *  @return  the SHA ID of the manifest */
+    public ObjectId getManifestID () {
+        load();
+        return _manifestID;
+    }
+
+    /** Accessor method to the SHA ID of the parent of this commit.
+     *  @return  the SHA ID of the parent, or null for the initial commit */
+    public ObjectId getParentID () {
+        load();
+        return _parentID;
+    }
+
+    /** Accessor method to the SHA ID of the second parent of this
+     *  commit, which is the head of the branch merged in.
+     *  @return  the SHA ID of the merged-in parent, or null */
+    public ObjectId getMergeParentID () {
+        load();
+        return _mergeParentID;
+    }
+
+    /** Records that this working commit merges in OTHER.
+     *  @param  other  the head of the branch being merged in */
+    public void setMergeParent (Commit other) {
+        _mergeParentID = other.getSHA();
+    }
+
     /** Accessor method to the message of this commit.
      *  @return  the message of this commit */
     public String getMessage () {
+        load();
         return _message;
     }
 
     /** Accessor for all my blobs.
-     *  @return   My array list of blobs */
-    public ArrayList<Blob> getBlobs() {
-        return _blobs;
+     *  @return   My manifest of blobs */
+    public Manifest getBlobs() {
+        return blobs();
     }
 
     /** Mutator method to the message of this commit.
@@ -73,76 +137,126 @@ public class Commit {
         _message = message;
     }
 
-    /** Writes all blobs to files in the working directory. */
-    public void writeAllFiles () {
-        for (Blob b: _blobs) {
-            b.writeBlob();
-        }
+    /** Writes this commit to the .gitlet object store. Should only
+     *  occur once this commit has been updated. Blobs and manifest
+     *  directories that are already stored are not rewritten. The commit is also
+     *  added to the commit graph, and so to the commit index, to the
+     *  changed-path filters and to the message index. */
+    public void writeToGitlet() {
+        blobs().write();
+        ObjectStore.write(_shaid, record());
+        index();
     }
 
-    /** Writes this commit to the .gitlet directory. Should only
-     *  occur once this commit has been updated. */
-    public void writeToGitlet() {
-        File file = new File(".gitlet/" + _shaid);
-        try {
-            file.createNewFile();
-            BufferedWriter bw = new BufferedWriter(new FileWriter(file));
-            bw.write(_message + "\n" + _time.toString() + "\n");
-            for (Blob b : _blobs){
-                b.writeBlob(file);
-                bw.write("\n");
-            }
+    /** Adds this commit, which is in the object store and whose parents
+     *  are in the commit graph, to the commit graph and the indexes, as
+     *  for a commit made here or received from another repository. */
+    void index() {
+        CommitGraph.get().add(this);
+        ChangedPaths.get().add(this);
+        CommitIndex.get().update();
+        MessageIndex.get().add(getSHA(), getMessage());
+    }
+
+    /** Updates this commit object to have the correct time stamp and
+     *  SHA ID. The id hashes only the commit record, and computing the
+     *  manifest id only hashes the directories on the paths to changed
+     *  files, so the cost does not grow with the files left unchanged.
+     *  The initial commit is stamped with the epoch, so that every
+     *  repository starts from the same commit and any two can exchange
+     *  commits. Do not call update on a commit more than once. */
+    public void update () {
+        _time = _parentID == null ? new Date(0) : new Date();
+        _manifestID = blobs().id();
+        _shaid = Utils.hash(record());
+    }
 
-        } catch (IOException io) {
-            Main.error("Writing to gitlet failed.");
+    /** Drops the list of blob handles of this commit, which must already
+     *  have been written to the object store. It is read back from the
+     *  manifest the next time it is needed. */
+    public void release () {
+        _blobs = null;
+    }
+
+    /** Returns the blob handles of this commit, reading them from its
+     *  stored manifest if they have been released. */
+    private Manifest blobs () {
+        if (_blobs == null) {
+            load();
+            _blobs = Manifest.read(_manifestID);
         }
+        return _blobs;
     }
 
-    /** Updates this commit object to have the correct time stamp.
-     *  Do not call update on a commit more than once. */
-    public void update () {
-        _time = new Date();
-        byte[][] b = new byte[_blobs.size()][];
-        int index = 0;
-        for (Blob c:_blobs) {
-            b[index] = c.getBytes();
-            index++;
+    /** Returns the commit record stored in the object store: the
+     *  record version and the number of parents as single bytes, the
+     *  20-byte ids of the parents and of the manifest, the time in
+     *  milliseconds as an 8-byte integer, and the message in UTF-8. */
+    private byte[] record () {
+        byte[] message = _message.getBytes(UTF_8);
+        int parents = _parentID == null ? 0 : _mergeParentID == null ? 1 : 2;
+        ByteBuffer buf = ByteBuffer.allocate(2 + (parents + 1) * ObjectId.SIZE
+                                             + 8 + message.length);
+        buf.put(RECORD_VERSION).put((byte) parents);
+        if (parents > 0) {
+            _parentID.write(buf);
         }
-        _shaid = Utils.sha1((Object[]) b);
+        if (parents > 1) {
+            _mergeParentID.write(buf);
+        }
+        _manifestID.write(buf);
+        buf.putLong(_time.getTime()).put(message);
+        return buf.array();
+    }
+
+    /** Reads the record of this commit from the object store, if it has
+     *  not been read yet. */
+    private void load () {
+        if (!_unread) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(ObjectStore.read(_shaid));
+        if (buf.get() != RECORD_VERSION) {
+            throw new IllegalArgumentException("bad commit record: " + _shaid);
+        }
+        int parents = buf.get();
+        _parentID = parents > 0 ? ObjectId.read(buf) : null;
+        _mergeParentID = parents > 1 ? ObjectId.read(buf) : null;
+        _manifestID = ObjectId.read(buf);
+        _time = new Date(buf.getLong());
+        _message = new String(buf.array(), buf.position(), buf.remaining(),
+                              UTF_8);
+        _unread = false;
     }
 
     /** Add a modified snapshot of a file to this working commit.
      *  @param  file  the file we want to add to the commit */
     public void add (File file){
-        Blob b = new Blob (file.getName(), file);
+        Blob b = new Blob (Blob.nameOf(file), file);
         add(b);
     }
+
+    /** Add the snapshots BLOBS to this working commit in one batch.
+     *  @param  blobs  the blobs we want to add to the commit */
+    public void addAll (Collection<Blob> blobs) {
+        Manifest manifest = blobs();
+        for (Blob b : blobs) {
+            manifest.add(b);
+        }
+        _modified = true;
+    }
     
     /** Add a modified snapshot of a blob to this working commit.
      *  @param  b  the blob we want to add to the commit */
     public void add (Blob b){
-        for (Blob o: _blobs) {
-            if(o.getName().equals(b.getName())) {
-                _blobs.remove(o);
-                break;
-            }
-        }
-        _blobs.add(b);
+        blobs().add(b);
         _modified = true;
     }
 
     /** Remove a file in this working commit (untrack).
      *  @param  name  the name of the file the user wishes to remove */
     public void remove (String name){
-        boolean removed = false;
-        for (Blob o: _blobs) {
-            if(o.getName().equals(name)) {
-                _blobs.remove(o);
-                removed = true;
-                break;
-            }
-        }
-        if(!removed) {
+        if(!blobs().remove(name)) {
             Main.error("No reason to remove the file.");
         } else {
             _modified = true;
@@ -155,24 +269,14 @@ public class Commit {
      *  @param  name  the name of the blob you want
      *  @return       the blob that is called 'name' */
     public Blob find (String name) {
-        for (Blob b: _blobs) {
-            if (b.getName().equals(name)) {
-                return b;
-            }
-        }
-        return null;
+        return blobs().find(name);
     }
 
     /** Returns if the blob with 'name' in this commit's harem of blobs.
      *  @param  name  the name of the blob you want
-     *  @return       whether _blobs contains the specified blob. */
+     *  @return       whether this commit contains the specified blob. */
     public boolean contains (String name) {
-        for (Blob b: _blobs) {
-            if (b.getName().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return blobs().contains(name);
     }
 
     /** Compares the time stamp of this commit to the commit passed in.
@@ -181,6 +285,8 @@ public class Commit {
      *  @param  other  the commit we are comparing this commit to
      *  @return        the integer corresponding to the commit relation */
     public int compare (Commit other){
+        load();
+        other.load();
         if (_time.before(other._time)) {
             return 1;
         } else if (_time.after(other._time)) {
@@ -194,7 +300,7 @@ public class Commit {
      *  @return  the array list of blobs that are in both commits */
     public ArrayList<Blob> sameFiles(Commit other) {
         ArrayList<Blob> blobs = new ArrayList<Blob>();
-        for (Blob b: _blobs) {
+        for (Blob b: blobs()) {
             if (other.contains(b.getName())) {
                 blobs.add(b);
             }
@@ -215,9 +321,9 @@ public class Commit {
      *  @return  the array list of blobs that were modified */
     public ArrayList<Blob> modifiedFiles (Commit other) {
         ArrayList<Blob> blobs = new ArrayList<Blob>();
-        for (Blob b: _blobs) {
-            if (other.contains(b.getName()) &&
-                    !other.find(b.getName()).getSHA().equals(b.getSHA())) {
+        for (Blob b: blobs()) {
+            Blob o = other.find(b.getName());
+            if (o != null && !o.getSHA().equals(b.getSHA())) {
                 blobs.add(b);
             }
         }
@@ -229,7 +335,7 @@ public class Commit {
      *  @return  the array list of blobs that were deleted */
     public ArrayList<Blob> deletedFiles(Commit other){
         ArrayList<Blob> blobs = new ArrayList<Blob>();
-        for (Blob b: _blobs) {
+        for (Blob b: blobs()) {
             if (!other.contains(b.getName())) {
                 blobs.add(b);
             }
@@ -242,8 +348,8 @@ public class Commit {
      *  @return  the array list of the blobs added */
     public ArrayList<Blob> addedFiles (Commit other) {
         ArrayList<Blob> blobs = new ArrayList<Blob>();
-        for (Blob b: _blobs) {
-            if (!other.contains(b.getName())) {
+        for (Blob b: other.blobs()) {
+            if (!contains(b.getName())) {
                 blobs.add(b);
             }
         }
@@ -251,11 +357,20 @@ public class Commit {
     }
 
 
+    /** The version of the commit record format. */
+    private static final byte RECORD_VERSION = 1;
+
+    /** Whether this commit is stored but its record has not been read. */
+    private boolean _unread;
+
     /** The time stamp for this commit. */
     private Date _time;
 
-    /** The parent commit of this commit. */
-    private Commit _parent;
+    /** The SHA ID of the parent commit of this commit. */
+    private ObjectId _parentID;
+
+    /** The SHA ID of the second parent of a merge commit, or null. */
+    private ObjectId _mergeParentID;
 
     /** The message corresponding to this commit. */
     private String _message;
@@ -264,10 +379,14 @@ public class Commit {
      * since previous commit. */
     private boolean _modified;
 
-    /** The SHA ID of this commit. */
-    private String _shaid;
+    /** The SHA ID of this commit, which is the SHA ID of its record. */
+    private ObjectId _shaid;
+
+    /** The SHA ID of the manifest of this commit. */
+    private ObjectId _manifestID;
 
-    /** Array list of blob files I contain. */
-    private ArrayList<Blob> _blobs;
+    /** Manifest of blob files I contain, or null if it has been
+     *  released. */
+    private Manifest _blobs;
 
 }
\ No newline at end of file
@@ -0,0 +1,320 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/** The commit graph of a repository: for every commit, the positions of
+ *  its parents and its generation number, which is one more than the
+ *  largest generation of its parents. Since a commit's generation is
+ *  always greater than that of any of its ancestors, ancestry queries
+ *  can stop walking as soon as they reach generations too low to matter.
+ *
+ *  The graph is kept in .gitlet/commit-graph, which starts with an
+ *  8-byte header and then holds one fixed-size record per commit, in the
+ *  order the commits were written, so parents always come first:
+ *  the 20-byte commit id, the positions of its two parents (-1 if
+ *  absent) and its generation, as 4-byte integers. The file is mapped
+ *  and read in place, so opening the graph costs the same however many
+ *  commits it holds; the commit index finds the position of an id.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class CommitGraph {
+
+    /** The file holding the commit graph. */
+    static final File FILE = new File(".gitlet", "commit-graph");
+
+    /** The first four bytes of the file. */
+    private static final int MAGIC = 0x43475048;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** The size of the file header in bytes. */
+    private static final int HEADER_SIZE = 8;
+
+    /** The size of one commit record in bytes. */
+    private static final int RECORD_SIZE = 32;
+
+    /** Position of a missing parent. */
+    static final int NONE = -1;
+
+    /** Returns the commit graph of the repository in the current
+     *  directory, mapping it the first time it is needed.
+     *  @return  the commit graph */
+    static CommitGraph get() {
+        if (_graph == null) {
+            _graph = new CommitGraph(FILE);
+        }
+        return _graph;
+    }
+
+    /** The commit graph in FILE, which is mapped if it exists. */
+    private CommitGraph(File file) {
+        _file = file;
+        load();
+    }
+
+    /** Maps the graph file, if there is one. A record cut short at its
+     *  end is not counted, and a header cut short counts as no file. */
+    private void load() {
+        _map = null;
+        _size = 0;
+        if (!_file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                 StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return;
+            }
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_map.getInt(0) != MAGIC || _map.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("bad commit-graph file");
+        }
+        _size = (_map.limit() - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /** Adds COMMIT, whose parents must already be in the graph, and
+     *  appends it to the commit-graph file. Only a record left incomplete
+     *  at the end of the file is cut off, and the graph is read again
+     *  first, so that the commits another process has appended since it
+     *  was read keep their places. Does nothing if COMMIT is already in
+     *  the graph.
+     *  @param  commit  a commit that has been written */
+    void add(Commit commit) {
+        ObjectId id = commit.getSHA();
+        try (FileChannel channel = FileChannel.open(_file.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.APPEND)) {
+            long size = channel.size();
+            long whole = size < HEADER_SIZE ? 0
+                : size - (size - HEADER_SIZE) % RECORD_SIZE;
+            if (size > whole) {
+                channel.truncate(whole);
+            }
+            load();
+            if (contains(id)) {
+                return;
+            }
+            int first = position(commit.getParentID());
+            int second = position(commit.getMergeParentID());
+            int generation = 1;
+            if (first != NONE) {
+                generation = Math.max(generation, generation(first) + 1);
+            }
+            if (second != NONE) {
+                generation = Math.max(generation, generation(second) + 1);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(
+                _map != null ? RECORD_SIZE : HEADER_SIZE + RECORD_SIZE);
+            if (_map == null) {
+                record.putInt(MAGIC).putInt(VERSION);
+            }
+            id.write(record);
+            record.putInt(first).putInt(second).putInt(generation).flip();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        load();
+    }
+
+    /** Rewrites the commit-graph file with only the commits in LIVE,
+     *  which must hold the parents of every commit it holds, in the same
+     *  order. The file is replaced by renaming, so readers see either the
+     *  old graph or the new one, and the graph is read again the next
+     *  time it is needed.
+     *  @param  live  the ids of the commits to keep */
+    static void retain(Set<ObjectId> live) {
+        CommitGraph graph = get();
+        int[] moved = new int[graph._size];
+        int count = 0;
+        for (int pos = 0; pos < graph._size; pos += 1) {
+            moved[pos] = live.contains(graph.id(pos)) ? count++ : NONE;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE);
+        buf.putInt(MAGIC).putInt(VERSION);
+        for (int pos = 0; pos < graph._size; pos += 1) {
+            if (moved[pos] == NONE) {
+                continue;
+            }
+            graph.id(pos).write(buf);
+            for (int k = 0; k <= 1; k += 1) {
+                int p = graph.parent(pos, k);
+                buf.putInt(p == NONE ? NONE : moved[p]);
+            }
+            buf.putInt(graph.generation(pos));
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _graph = null;
+    }
+
+    /** Returns the number of commits in the graph.
+     *  @return  the number of commits */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the id of the commit at position POS.
+     *  @param  pos  a position in the graph
+     *  @return      the id of the commit at POS */
+    ObjectId id(int pos) {
+        return ObjectId.read(_map, record(pos));
+    }
+
+    /** Returns the position of a parent of the commit at position POS:
+     *  its first parent if K is 0, or the parent merged into it if K is
+     *  1. Returns NONE if there is no such parent.
+     *  @param  pos  a position in the graph
+     *  @param  k    0 or 1
+     *  @return      the position of the parent, or NONE */
+    int parent(int pos, int k) {
+        return _map.getInt(record(pos) + 20 + 4 * k);
+    }
+
+    /** Returns whether the commit ID is in the graph.
+     *  @param  id  a commit id
+     *  @return     whether ID is in the graph */
+    boolean contains(ObjectId id) {
+        return position(id) != NONE;
+    }
+
+    /** Returns the generation of the commit ID, or 0 if it is not in
+     *  the graph.
+     *  @param  id  a commit id
+     *  @return     the generation of ID */
+    int generation(ObjectId id) {
+        int pos = position(id);
+        return pos == NONE ? 0 : generation(pos);
+    }
+
+    /** Returns whether the commit ANCESTOR can be reached from the commit
+     *  DESCENDANT by following parents (a commit is its own ancestor).
+     *  Commits whose generation is below ANCESTOR's are never visited.
+     *  @param  ancestor    a commit id
+     *  @param  descendant  a commit id
+     *  @return             whether ANCESTOR is an ancestor of DESCENDANT */
+    boolean isAncestor(ObjectId ancestor, ObjectId descendant) {
+        int target = position(ancestor), start = position(descendant);
+        if (target == NONE || start == NONE) {
+            return false;
+        }
+        int floor = generation(target);
+        boolean[] seen = new boolean[_size];
+        int[] stack = new int[_size];
+        int top = 0;
+        stack[top++] = start;
+        seen[start] = true;
+        while (top > 0) {
+            int pos = stack[--top];
+            if (pos == target) {
+                return true;
+            }
+            for (int k = 0; k <= 1; k += 1) {
+                int p = parent(pos, k);
+                if (p != NONE && !seen[p] && generation(p) >= floor) {
+                    seen[p] = true;
+                    stack[top++] = p;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the id of a lowest common ancestor of the commits A and B,
+     *  or null if they have none. Commits are visited from the highest
+     *  generation down, marking which of A and B reach them; the first
+     *  commit reached from both has no common ancestor of higher
+     *  generation, and so none that descends from it.
+     *  @param  a  a commit id
+     *  @param  b  a commit id
+     *  @return    the id of the merge base of A and B */
+    ObjectId mergeBase(ObjectId a, ObjectId b) {
+        int posA = position(a), posB = position(b);
+        if (posA == NONE || posB == NONE) {
+            return null;
+        }
+        final byte fromA = 1, fromB = 2, both = 3;
+        byte[] flags = new byte[_size];
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+            (x, y) -> Integer.compare(generation(y), generation(x)));
+        flags[posA] |= fromA;
+        flags[posB] |= fromB;
+        queue.add(posA);
+        if (posB != posA) {
+            queue.add(posB);
+        }
+        while (!queue.isEmpty()) {
+            int pos = queue.poll();
+            if (flags[pos] == both) {
+                return id(pos);
+            }
+            for (int k = 0; k <= 1; k += 1) {
+                int p = parent(pos, k);
+                if (p != NONE && (flags[p] | flags[pos]) != flags[p]) {
+                    if (flags[p] == 0) {
+                        queue.add(p);
+                    }
+                    flags[p] |= flags[pos];
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the position of the commit ID, or NONE if ID is null or
+     *  not in the graph.
+     *  @param  id  a commit id, or null
+     *  @return     its position */
+    int position(ObjectId id) {
+        if (id == null || _size == 0) {
+            return NONE;
+        }
+        return CommitIndex.get().position(id);
+    }
+
+    /** Returns the generation of the commit at position POS. */
+    private int generation(int pos) {
+        return _map.getInt(record(pos) + 28);
+    }
+
+    /** Returns the offset in the file of the record at position POS. */
+    private static int record(int pos) {
+        return HEADER_SIZE + pos * RECORD_SIZE;
+    }
+
+    /** The graph of the repository in the current directory. */
+    private static CommitGraph _graph;
+
+    /** The file holding this graph. */
+    private File _file;
+
+    /** The mapped graph file, or null if there is none. */
+    private MappedByteBuffer _map;
+
+    /** The number of commits in the graph. */
+    private int _size;
+
+}
@@ -0,0 +1,290 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Maps full or abbreviated commit ids to commits, and full ids to
+ *  their positions in the commit graph, in O(log n).
+ *
+ *  The index is kept in .gitlet/commit-index: an 8-byte header, the
+ *  number N of commit-graph entries it covers, the id of the last of
+ *  them, a fan-out table of 256 4-byte counts in which entry B is the
+ *  number of ids whose first byte is at most B, then the N 20-byte ids
+ *  of those commits in sorted order, and then the position of each of
+ *  them as a 4-byte integer. Lookups binary search the mapped file
+ *  within the fan-out bucket. Commits added to the commit graph since
+ *  the index was last written are searched directly, and the index is
+ *  rewritten once there are more than REBUILD_THRESHOLD of them. An
+ *  index whose last id is not at the same position in the graph was
+ *  written for a graph gc has since rewritten, and covers nothing.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class CommitIndex {
+
+    /** The file holding the index. */
+    static final File FILE = new File(".gitlet", "commit-index");
+
+    /** The first four bytes of the file. */
+    private static final int MAGIC = 0x43494458;
+
+    /** The version of the file format. */
+    private static final int VERSION = 2;
+
+    /** The size of the header, count, last id and fan-out table in
+     *  bytes. */
+    private static final int TABLE_SIZE = 32 + 256 * 4;
+
+    /** The size of one id in bytes. */
+    private static final int ID_SIZE = 20;
+
+    /** The number of unindexed commits that triggers a rewrite. */
+    private static final int REBUILD_THRESHOLD = 256;
+
+    /** Returns the commit index of the repository in the current
+     *  directory, reading it the first time it is needed.
+     *  @return  the commit index */
+    static CommitIndex get() {
+        if (_index == null) {
+            _index = new CommitIndex();
+            _index.load();
+        }
+        return _index;
+    }
+
+    /** Returns the full id of the one commit whose id starts with the
+     *  hex digits PREFIX. Throws IllegalArgumentException if there is no
+     *  such commit or if there is more than one.
+     *  @param  prefix  a full or abbreviated commit id
+     *  @return         the full commit id */
+    ObjectId resolve(String prefix) {
+        prefix = prefix.toLowerCase();
+        if (prefix.isEmpty() || prefix.length() > 2 * ID_SIZE
+            || !prefix.matches("[0-9a-f]*")) {
+            throw new IllegalArgumentException(
+                "No commit with that id exists.");
+        }
+        CommitGraph graph = CommitGraph.get();
+        int count = covered(graph);
+        ObjectId found = null;
+        if (count > 0) {
+            found = searchIndex(prefix);
+        }
+        for (int pos = count; pos < graph.size(); pos += 1) {
+            ObjectId id = graph.id(pos);
+            if (id.toString().startsWith(prefix)) {
+                if (found != null && !found.equals(id)) {
+                    throw new IllegalArgumentException(
+                        "Ambiguous commit id.");
+                }
+                found = id;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException(
+                "No commit with that id exists.");
+        }
+        return found;
+    }
+
+    /** Returns the position in the commit graph of the commit ID, or
+     *  CommitGraph.NONE if it is not there. The index is rewritten first
+     *  if too many commits lie past it, as they do in a repository whose
+     *  index is missing or out of date.
+     *  @param  id  a full commit id
+     *  @return     its position */
+    int position(ObjectId id) {
+        update();
+        CommitGraph graph = CommitGraph.get();
+        int count = covered(graph);
+        if (count > 0) {
+            int i = searchIndex(id);
+            if (i >= 0) {
+                return _map.getInt(TABLE_SIZE + count * ID_SIZE + 4 * i);
+            }
+        }
+        for (int pos = count; pos < graph.size(); pos += 1) {
+            if (graph.id(pos).equals(id)) {
+                return pos;
+            }
+        }
+        return CommitGraph.NONE;
+    }
+
+    /** Rewrites the index if too many commits have been added to the
+     *  commit graph since it was last written. */
+    void update() {
+        CommitGraph graph = CommitGraph.get();
+        if (graph.size() - covered(graph) > REBUILD_THRESHOLD) {
+            rebuild();
+        }
+    }
+
+    /** Rewrites the index to cover every commit in the commit graph. */
+    void rebuild() {
+        CommitGraph graph = CommitGraph.get();
+        int count = graph.size();
+        final ObjectId[] ids = new ObjectId[count];
+        Integer[] order = new Integer[count];
+        for (int pos = 0; pos < count; pos += 1) {
+            ids[pos] = graph.id(pos);
+            order[pos] = pos;
+        }
+        Arrays.sort(order, (a, b) -> ids[a].compareTo(ids[b]));
+
+        ByteBuffer buf =
+            ByteBuffer.allocate(TABLE_SIZE + count * (ID_SIZE + 4));
+        buf.putInt(MAGIC).putInt(VERSION).putInt(count);
+        if (count > 0) {
+            ids[count - 1].write(buf);
+        } else {
+            buf.position(buf.position() + ID_SIZE);
+        }
+        int k = 0;
+        for (int b = 0; b < 256; b += 1) {
+            while (k < count && ids[order[k]].firstByte() <= b) {
+                k += 1;
+            }
+            buf.putInt(k);
+        }
+        for (int pos : order) {
+            ids[pos].write(buf);
+        }
+        for (int pos : order) {
+            buf.putInt(pos);
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        load();
+    }
+
+    /** Maps the index file, if there is one. An index in an older format
+     *  is treated as missing, and is replaced the next time it is
+     *  needed. */
+    private void load() {
+        _count = 0;
+        _map = null;
+        if (!FILE.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                 StandardOpenOption.READ)) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_map.getInt(0) != MAGIC || _map.getInt(4) > VERSION) {
+            throw new IllegalArgumentException("bad commit-index file");
+        }
+        if (_map.getInt(4) == VERSION) {
+            _count = _map.getInt(8);
+        }
+    }
+
+    /** Returns the number of the commits of GRAPH this index covers: all
+     *  it was written for, unless GRAPH no longer holds the last of them
+     *  at the same position, in which case it covers none. */
+    private int covered(CommitGraph graph) {
+        if (_count == 0 || _count > graph.size()
+            || !graph.id(_count - 1).equals(ObjectId.read(_map, 12))) {
+            return 0;
+        }
+        return _count;
+    }
+
+    /** Returns the index of the id ID in the sorted ids, or -1 if it is
+     *  not there. */
+    private int searchIndex(ObjectId id) {
+        int b = id.firstByte();
+        int lo = b == 0 ? 0 : fanout(b - 1), hi = fanout(b);
+        byte[] key = id.toBytes();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns the one indexed id starting with PREFIX, or null if there
+     *  is none. Throws IllegalArgumentException if there are several. */
+    private ObjectId searchIndex(String prefix) {
+        int first = Integer.parseInt(prefix.substring(0, 1), 16) << 4;
+        int last = first + 15;
+        if (prefix.length() > 1) {
+            first = last = Integer.parseInt(prefix.substring(0, 2), 16);
+        }
+        int lo = first == 0 ? 0 : fanout(first - 1), hi = fanout(last);
+
+        byte[] key = Utils.fromHex(prefix.length() % 2 == 0
+                                   ? prefix : prefix + "0");
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo >= _count || !id(lo).toString().startsWith(prefix)) {
+            return null;
+        }
+        if (lo + 1 < _count && id(lo + 1).toString().startsWith(prefix)) {
+            throw new IllegalArgumentException("Ambiguous commit id.");
+        }
+        return id(lo);
+    }
+
+    /** Returns entry B of the fan-out table. */
+    private int fanout(int b) {
+        return _map.getInt(32 + 4 * b);
+    }
+
+    /** Compares the first KEY.length bytes of the id at index I with KEY,
+     *  as unsigned bytes. */
+    private int compare(int i, byte[] key) {
+        int base = TABLE_SIZE + i * ID_SIZE;
+        for (int k = 0; k < key.length; k += 1) {
+            int c = Integer.compare(_map.get(base + k) & 0xff,
+                                    key[k] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the id at index I. */
+    private ObjectId id(int i) {
+        return ObjectId.read(_map, TABLE_SIZE + i * ID_SIZE);
+    }
+
+    /** The index of the repository in the current directory. */
+    private static CommitIndex _index;
+
+    /** The mapped index file, or null if there is none. */
+    private MappedByteBuffer _map;
+
+    /** The number of commits in the index. */
+    private int _count;
+
+}
@@ -0,0 +1,184 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** A long-lived server that keeps a repository loaded between commands,
+ *  and the client that hands commands to it. While the server runs, the
+ *  branches, the commit graph and indexes, the stat cache and the open
+ *  packs stay in memory, so a command costs only its own work instead of
+ *  a JVM start and a repository load.
+ *
+ *  The server listens on the Unix domain socket .gitlet/daemon.sock in
+ *  the root of the working tree. A client connects, writes the arguments
+ *  of one command in UTF-8, each followed by a zero byte, and shuts down
+ *  its side of the connection; the server runs the command and sends
+ *  back everything it printed, then closes the connection. Any client
+ *  that can speak to a socket will do, for instance
+ *
+ *      printf 'add\0a.txt\0' | nc -U -N .gitlet/daemon.sock
+ *
+ *  Commands run one at a time, in the order they arrive. Every command
+ *  still writes its changes to the repository before its output is sent,
+ *  so the server can be stopped at any time. While it runs, all commands
+ *  in the repository should go through it, since it does not look for
+ *  changes made behind its back.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Daemon {
+
+    /** The socket the server listens on. */
+    static final File SOCKET = new File(".gitlet", "daemon.sock");
+
+    /** The command that stops the server. */
+    static final String STOP = "stop-daemon";
+
+    /** Serves commands on SOCKET until a client sends STOP. */
+    static void serve() {
+        if (!new File(".gitlet").isDirectory()) {
+            Main.error("Not in an initialized gitlet directory.");
+            return;
+        }
+        UnixDomainSocketAddress address =
+            UnixDomainSocketAddress.of(SOCKET.toPath());
+        SOCKET.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            Daemon daemon = new Daemon();
+            while (!daemon._stopped) {
+                try (SocketChannel client = server.accept()) {
+                    daemon.handle(client);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            SOCKET.delete();
+        }
+    }
+
+    /** Runs the command ARGS in the server for this repository and
+     *  prints its output, if a server is running. Returns false if there
+     *  is no server to take the command, in which case nothing was run.
+     *  Once the command has been sent it may have run, even if the
+     *  connection then fails, so it must not be run again here; the
+     *  failure is reported instead.
+     *  @param  args  the arguments of the command
+     *  @return       whether the command went to the server */
+    static boolean forward(String[] args) {
+        if (!SOCKET.exists()) {
+            return false;
+        }
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(UTF_8);
+            request.write(bytes, 0, bytes.length);
+            request.write(0);
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(
+                UnixDomainSocketAddress.of(SOCKET.toPath()));
+        } catch (IOException excp) {
+            return false;
+        }
+        try (channel) {
+            ByteBuffer out = ByteBuffer.wrap(request.toByteArray());
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.shutdownOutput();
+            ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(in) >= 0) {
+                System.out.write(in.array(), 0, in.position());
+                in.clear();
+            }
+            System.out.flush();
+        } catch (IOException excp) {
+            System.out.flush();
+            Main.error("The daemon stopped before finishing the command.");
+        }
+        return true;
+    }
+
+    /** Reads one command from CLIENT, runs it and sends back its
+     *  output. */
+    private void handle(SocketChannel client) throws IOException {
+        String[] args = readCommand(client);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (args.length == 1 && args[0].equals(STOP)) {
+            _stopped = true;
+        } else {
+            run(args, new PrintStream(output, true, UTF_8));
+        }
+        ByteBuffer reply = ByteBuffer.wrap(output.toByteArray());
+        while (reply.hasRemaining()) {
+            client.write(reply);
+        }
+    }
+
+    /** Runs the command ARGS against the loaded repository, with
+     *  everything it prints sent to OUT. A command that fails leaves the
+     *  server running, but its branches are read again from the refs
+     *  file for the next command. */
+    private void run(String[] args, PrintStream out) {
+        PrintStream stdout = System.out, stderr = System.err;
+        System.setOut(out);
+        System.setErr(out);
+        try {
+            CommandInterpreter interp = new CommandInterpreter(args, _tree);
+            interp.processCommand();
+            _tree = interp.tree();
+        } catch (RuntimeException excp) {
+            out.println(excp.getMessage());
+            _tree = null;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+    }
+
+    /** Returns the arguments sent by CLIENT, which are zero-terminated
+     *  and end when the client shuts down its output. */
+    private static String[] readCommand(SocketChannel client)
+        throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        while (client.read(in) >= 0) {
+            request.write(in.array(), 0, in.position());
+            in.clear();
+        }
+        byte[] bytes = request.toByteArray();
+        ArrayList<String> args = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i += 1) {
+            if (bytes[i] == 0) {
+                args.add(new String(bytes, start, i - start, UTF_8));
+                start = i + 1;
+            }
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    /** The size of the buffers used to read from a socket. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The branches of the repository, or null if they are to be read
+     *  from the refs file by the next command. */
+    private Tree _tree;
+
+    /** Whether a client has asked the server to stop. */
+    private boolean _stopped;
+
+}
@@ -0,0 +1,170 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** Binary deltas between two versions of an object.
+ *
+ *  A delta starts with the lengths of the base and of the target, as
+ *  variable-length integers, followed by instructions that rebuild the
+ *  target. An instruction byte with the high bit set copies a run of
+ *  the base, and is followed by the offset and length of the run. Any
+ *  other instruction byte N inserts the N bytes that follow it.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Delta {
+
+    /** The length of the blocks of the base that copies are found from. */
+    private static final int BLOCK = 16;
+
+    /** The multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** PRIME to the power BLOCK - 1, to drop a byte from the hash. */
+    private static final int TOP;
+
+    static {
+        int top = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            top *= PRIME;
+        }
+        TOP = top;
+    }
+
+    /** The instruction bit marking a copy. */
+    private static final int COPY = 0x80;
+
+    /** The largest number of bytes one insert instruction can hold. */
+    private static final int MAX_INSERT = 0x7f;
+
+    /** Returns a delta that rebuilds TARGET from BASE. Every BLOCK-byte
+     *  block of BASE is indexed by its hash; TARGET is then scanned with
+     *  a rolling hash, and every matching block is extended as far as it
+     *  goes in both directions and turned into a single copy.
+     *  @param  base    the base version
+     *  @param  target  the version to rebuild
+     *  @return         the delta */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        HashMap<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+
+        int pending = 0, j = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (j + BLOCK <= target.length) {
+            Integer candidate = blocks.get(h);
+            if (candidate != null
+                && Arrays.equals(base, candidate, candidate + BLOCK,
+                                 target, j, j + BLOCK)) {
+                int b = candidate, t = j;
+                while (b > 0 && t > pending && base[b - 1] == target[t - 1]) {
+                    b -= 1;
+                    t -= 1;
+                }
+                int len = j - t + BLOCK;
+                while (b + len < base.length && t + len < target.length
+                       && base[b + len] == target[t + len]) {
+                    len += 1;
+                }
+                writeInsert(out, target, pending, t);
+                out.write(COPY);
+                writeVarint(out, b);
+                writeVarint(out, len);
+                j = t + len;
+                pending = j;
+                if (j + BLOCK <= target.length) {
+                    h = hash(target, j);
+                }
+            } else {
+                if (j + BLOCK < target.length) {
+                    h = (h - target[j] * TOP) * PRIME + target[j + BLOCK];
+                }
+                j += 1;
+            }
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the target rebuilt by applying DELTA to BASE. Throws
+     *  IllegalArgumentException if DELTA was not made from BASE.
+     *  @param  base   the base version
+     *  @param  delta  a delta created from BASE
+     *  @return        the target version */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta does not match base");
+        }
+        byte[] target = new byte[(int) readVarint(delta, pos)];
+        int t = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++] & 0xff;
+            if ((op & COPY) != 0) {
+                int offset = (int) readVarint(delta, pos);
+                int len = (int) readVarint(delta, pos);
+                System.arraycopy(base, offset, target, t, len);
+                t += len;
+            } else {
+                System.arraycopy(delta, pos[0], target, t, op);
+                pos[0] += op;
+                t += op;
+            }
+        }
+        if (t != target.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return target;
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            h = h * PRIME + data[i];
+        }
+        return h;
+    }
+
+    /** Writes insert instructions for TARGET[FROM .. TO) to OUT. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target,
+                                    int from, int to) {
+        while (from < to) {
+            int n = Math.min(MAX_INSERT, to - from);
+            out.write(n);
+            out.write(target, from, n);
+            from += n;
+        }
+    }
+
+    /** Writes the non-negative VALUE to OUT, seven bits per byte, low
+     *  bits first, with the high bit set on all but the last byte. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Reads a value written by writeVarint from DATA at POS[0], and
+     *  advances POS[0] past it. */
+    static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+}
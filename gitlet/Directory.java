@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** One directory of a manifest: a tree object mapping the name of each
+ *  of its entries to a blob or to a subdirectory.
+ *
+ *  A directory is stored as one line per entry in name order, holding
+ *  the kind of the entry ("blob" or "tree"), its SHA ID and its name,
+ *  and its id is the SHA ID of that text. A directory read from the
+ *  store loads its entries only when they are first needed, and it is
+ *  rehashed and rewritten only after something beneath it has changed,
+ *  so unchanged subtrees keep their ids from commit to commit.
+ *
+ *  Directories are immutable: adding or removing a file returns a new
+ *  directory that shares every unchanged entry and subdirectory with the
+ *  old one, so a manifest is copied in constant time and each change
+ *  costs only the path from the root to the file.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Directory {
+
+    /** An empty directory whose entries are named PREFIX followed by
+     *  their own names.
+     *  @param  prefix  the path of the directory, ending in '/', or "" */
+    Directory(String prefix) {
+        this(prefix, PersistentMap.<Object>empty());
+    }
+
+    /** The stored directory ID whose entries are named PREFIX followed
+     *  by their own names.
+     *  @param  prefix  the path of the directory, ending in '/', or ""
+     *  @param  id      the SHA ID of the directory */
+    Directory(String prefix, ObjectId id) {
+        _prefix = prefix;
+        _id = id;
+        _stored = true;
+    }
+
+    /** A directory not yet stored, named PREFIX, holding ENTRIES. */
+    private Directory(String prefix, PersistentMap<Object> entries) {
+        _prefix = prefix;
+        _entries = entries;
+    }
+
+    /** Returns the SHA ID of this directory, hashing it and any new
+     *  subdirectories the first time it is needed.
+     *  @return  the id of this directory */
+    ObjectId id() {
+        if (_id == null) {
+            _id = Utils.hash(toBytes());
+        }
+        return _id;
+    }
+
+    /** Returns the entries of this directory, by name, reading them from
+     *  the store the first time they are needed.
+     *  @return  the entries, each a Blob or a Directory */
+    PersistentMap<Object> entries() {
+        if (_entries == null) {
+            PersistentMap<Object> entries = PersistentMap.empty();
+            String text = new String(ObjectStore.read(_id), UTF_8);
+            for (String line : text.split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int first = line.indexOf(' ');
+                int second = line.indexOf(' ', first + 1);
+                String kind = line.substring(0, first);
+                ObjectId id =
+                    ObjectId.fromHex(line.substring(first + 1, second));
+                String name = line.substring(second + 1);
+                if (kind.equals("tree")) {
+                    entries = entries.put(name,
+                        new Directory(_prefix + name + "/", id));
+                } else {
+                    entries = entries.put(name, new Blob(_prefix + name, id));
+                }
+            }
+            _entries = entries;
+        }
+        return _entries;
+    }
+
+    /** Returns the path of this directory, ending in '/', or "" for the
+     *  root.
+     *  @return  the path prefix of the entries */
+    String prefix() {
+        return _prefix;
+    }
+
+    /** Returns whether this directory has no entries.
+     *  @return  whether it is empty */
+    boolean isEmpty() {
+        return entries().isEmpty();
+    }
+
+    /** Returns the blob at PATH, starting at component K, or null.
+     *  @param  path  the components of a file name
+     *  @param  k     the index of the component naming an entry here
+     *  @return       the blob, or null */
+    Blob find(String[] path, int k) {
+        Object child = entry(path, k);
+        return child instanceof Blob ? (Blob) child : null;
+    }
+
+    /** Returns the blob or directory at PATH, starting at component K,
+     *  or null.
+     *  @param  path  the components of a file or directory name
+     *  @param  k     the index of the component naming an entry here
+     *  @return       the Blob or Directory, or null */
+    Object entry(String[] path, int k) {
+        Object child = entries().get(path[k]);
+        if (k == path.length - 1) {
+            return child;
+        }
+        return child instanceof Directory
+            ? ((Directory) child).entry(path, k + 1) : null;
+    }
+
+    /** Returns this directory with B at PATH, starting at component K,
+     *  creating directories as needed and replacing whatever was there.
+     *  @param  path  the components of the name of B
+     *  @param  k     the index of the component naming an entry here
+     *  @param  b     the blob to add
+     *  @return       the new directory */
+    Directory add(String[] path, int k, Blob b) {
+        PersistentMap<Object> entries = entries();
+        if (k == path.length - 1) {
+            return new Directory(_prefix, entries.put(path[k], b));
+        }
+        Object child = entries.get(path[k]);
+        Directory dir = child instanceof Directory ? (Directory) child
+            : new Directory(_prefix + path[k] + "/");
+        return new Directory(_prefix,
+                             entries.put(path[k], dir.add(path, k + 1, b)));
+    }
+
+    /** Returns this directory without the blob at PATH, starting at
+     *  component K, and without any directories that leaves empty. If
+     *  there is no such blob, returns this directory itself.
+     *  @param  path  the components of a file name
+     *  @param  k     the index of the component naming an entry here
+     *  @return       the new directory */
+    Directory remove(String[] path, int k) {
+        PersistentMap<Object> entries = entries();
+        Object child = entries.get(path[k]);
+        if (k == path.length - 1) {
+            if (!(child instanceof Blob)) {
+                return this;
+            }
+            return new Directory(_prefix, entries.remove(path[k]));
+        }
+        if (!(child instanceof Directory)) {
+            return this;
+        }
+        Directory dir = ((Directory) child).remove(path, k + 1);
+        if (dir == child) {
+            return this;
+        }
+        return new Directory(_prefix, dir.isEmpty()
+                             ? entries.remove(path[k])
+                             : entries.put(path[k], dir));
+    }
+
+    /** Appends every blob beneath this directory to OUT, in tree order.
+     *  @param  out  the list to add to */
+    void collect(ArrayList<Blob> out) {
+        for (Map.Entry<String, Object> e : entries()) {
+            Object child = e.getValue();
+            if (child instanceof Blob) {
+                out.add((Blob) child);
+            } else {
+                ((Directory) child).collect(out);
+            }
+        }
+    }
+
+    /** Stores this directory and every subdirectory that has changed
+     *  since it was read or last stored. */
+    void write() {
+        if (_stored) {
+            return;
+        }
+        for (Map.Entry<String, Object> e : entries()) {
+            Object child = e.getValue();
+            if (child instanceof Directory) {
+                ((Directory) child).write();
+            }
+        }
+        ObjectStore.write(id(), toBytes());
+        _stored = true;
+    }
+
+    /** Returns the stored form of this directory. */
+    private byte[] toBytes() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> e : entries()) {
+            Object child = e.getValue();
+            if (child instanceof Blob) {
+                text.append("blob ").append(((Blob) child).getSHA());
+            } else {
+                text.append("tree ").append(((Directory) child).id());
+            }
+            text.append(' ').append(e.getKey()).append('\n');
+        }
+        return text.toString().getBytes(UTF_8);
+    }
+
+    /** The path of this directory, ending in '/', or "" for the root. */
+    private final String _prefix;
+
+    /** The entries, by name, or null if they have not been read yet. */
+    private PersistentMap<Object> _entries;
+
+    /** The SHA ID, or null if it has not been computed yet. */
+    private ObjectId _id;
+
+    /** Whether this directory is in the store. */
+    private boolean _stored;
+
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Removes the objects that nothing refers to any longer, such as the
+ *  commits of removed branches and the versions of files that were
+ *  staged and then replaced.
+ *
+ *  Collection marks every object reachable from the roots, then sweeps:
+ *  the marked objects are written to one new pack, except those too large
+ *  to be packed, which stay loose, and the old packs and the loose
+ *  objects are deleted. The roots are the heads and staged
+ *  files of the branches, and every loose commit written within the
+ *  grace period, since another process may have made a commit whose
+ *  branch it has not yet saved. Unmarked objects written within the
+ *  grace period are kept too, as they may belong to a command still
+ *  running; those in a pack are left loose with the time of the pack,
+ *  so that they keep their age and are removed once it passes the grace
+ *  period. Storing an object again counts as writing it. The walks from
+ *  the roots are split among several threads over one Reachability, so
+ *  the stored reachability sets of the current pack are shared by all.
+ *
+ *  Readers running meanwhile are safe: the new pack is in place before
+ *  anything is deleted, the commit graph and indexes are replaced by
+ *  renaming, and a reader that misses an object looks at the packs on
+ *  disk again before giving up.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class GarbageCollector {
+
+    /** The grace period used when none is given, in milliseconds. */
+    static final long DEFAULT_GRACE = 14L * 24 * 60 * 60 * 1000;
+
+    /** Removes the objects not reachable from the commits HEADS or the
+     *  manifests STAGED and not written in the last GRACE milliseconds.
+     *  @param  heads   the ids of the head commits of the branches
+     *  @param  staged  the ids of the staged manifests of the branches
+     *  @param  grace   the grace period, in milliseconds */
+    static void collect(List<ObjectId> heads, List<ObjectId> staged,
+                        long grace) {
+        long cutoff = System.currentTimeMillis() - grace;
+        ArrayList<Pack> oldPacks = ObjectStore.packs();
+        ArrayList<ObjectId> loose = ObjectStore.looseIDs();
+        ArrayList<Pack> recentPacks = new ArrayList<Pack>();
+        for (Pack pack : oldPacks) {
+            if (pack.packFile().lastModified() >= cutoff) {
+                recentPacks.add(pack);
+            }
+        }
+
+        ArrayList<ObjectId> roots = new ArrayList<ObjectId>(heads);
+        CommitGraph graph = CommitGraph.get();
+        for (int pos = graph.size() - 1; pos >= 0; pos -= 1) {
+            ObjectId id = graph.id(pos);
+            if (ObjectStore.objectFile(id).lastModified() >= cutoff) {
+                roots.add(id);
+            }
+        }
+        Reachability reach = new Reachability();
+        Bitmap marked = mark(reach, roots, staged);
+
+        HashSet<ObjectId> keep = new HashSet<ObjectId>(reach.ids(marked));
+        HashSet<ObjectId> live = new HashSet<ObjectId>();
+        for (int pos = 0; pos < graph.size(); pos += 1) {
+            if (keep.contains(graph.id(pos))) {
+                live.add(graph.id(pos));
+            }
+        }
+        for (Pack pack : recentPacks) {
+            long time = pack.packFile().lastModified();
+            for (int i = 0; i < pack.size(); i += 1) {
+                if (!keep.contains(pack.id(i))) {
+                    ObjectStore.loosen(pack.id(i), time);
+                }
+            }
+        }
+
+        File index = null;
+        if (!keep.isEmpty()) {
+            PackWriter writer = new PackWriter();
+            writer.writeAll(keep);
+            index = writer.finish();
+        }
+        ChangedPaths.retain(live);
+        CommitGraph.retain(live);
+        CommitIndex.get().rebuild();
+        MessageIndex.retain(live);
+
+        PackWriter.removePacks(oldPacks, index);
+        for (ObjectId id : loose) {
+            File file = ObjectStore.objectFile(id);
+            if (keep.contains(id) ? PackWriter.packable(id)
+                : file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+        for (Pack pack : ObjectStore.packs()) {
+            if (pack.indexFile().equals(index)) {
+                Reachability.write(pack);
+            }
+        }
+    }
+
+    /** Returns the set, in the positions of REACH, of the objects
+     *  reachable from the commits COMMITS or the manifests MANIFESTS.
+     *  The commits are dealt round to one walk per processor, so that a
+     *  walk mostly meets commits reachable from the ones before it and
+     *  stops there, and the walks run at once. */
+    private static Bitmap mark(final Reachability reach,
+                               List<ObjectId> commits,
+                               final List<ObjectId> manifests) {
+        int threads = Math.max(1, Math.min(commits.size(),
+            Runtime.getRuntime().availableProcessors()));
+        ArrayList<ArrayList<ObjectId>> groups =
+            new ArrayList<ArrayList<ObjectId>>();
+        for (int k = 0; k < threads; k += 1) {
+            groups.add(new ArrayList<ObjectId>());
+        }
+        for (int i = 0; i < commits.size(); i += 1) {
+            groups.get(i % threads).add(commits.get(i));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<Bitmap>> results = new ArrayList<Future<Bitmap>>();
+            for (final ArrayList<ObjectId> group : groups) {
+                results.add(pool.submit(new Callable<Bitmap>() {
+                    public Bitmap call() {
+                        return reach.reachable(group);
+                    }
+                }));
+            }
+            results.add(pool.submit(new Callable<Bitmap>() {
+                public Bitmap call() {
+                    Bitmap set = new Bitmap();
+                    for (ObjectId id : manifests) {
+                        set.or(reach.tree(id));
+                    }
+                    return set;
+                }
+            }));
+            Bitmap marked = new Bitmap();
+            for (Future<Bitmap> result : results) {
+                marked.or(result.get());
+            }
+            return marked;
+        } catch (InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (ExecutionException excp) {
+            Throwable cause = excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalArgumentException(cause.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A lazy walk over commits, from a head back along its first parents
+ *  or from the last commit written to the commit graph back to the
+ *  first. Each commit is read from the object store only when the walk
+ *  reaches it and is dropped once it has been passed, so the first
+ *  commits of a long history are available at once and a walk of any
+ *  length takes constant memory.
+ *
+ *  A walk may be cut off after a number of commits, and limited to the
+ *  commits made in a range of times and to those that changed a path.
+ *  A first-parent walk ends at the first commit older than the start
+ *  of its range, without reading the rest of the history. The graph
+ *  is in the order commits were written, not made: a fetch appends
+ *  older commits after newer ones, and clocks may disagree. A walk
+ *  over the graph therefore only passes over commits out of its range.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class History implements Iterator<Commit> {
+
+    /** A walk that starts at HEAD and follows first parents. */
+    private History(ObjectId head) {
+        _next = head;
+        _position = -1;
+    }
+
+    /** A walk over the commit graph from position POSITION down. */
+    private History(int position) {
+        _position = position;
+    }
+
+    /** Returns a walk over the commit HEAD and its first parents, back
+     *  to the initial commit.
+     *  @param  head  the id of the commit to start at
+     *  @return       the walk */
+    static History firstParents(ObjectId head) {
+        return new History(head);
+    }
+
+    /** Returns a walk over every commit in the repository, in the
+     *  reverse of the order in which they were written to it, which is not
+     *  always the order in which they were made.
+     *  @return  the walk */
+    static History all() {
+        return new History(CommitGraph.get().size() - 1);
+    }
+
+    /** Ends this walk after COUNT commits.
+     *  @param  count  the largest number of commits to return
+     *  @return        this walk */
+    History limit(int count) {
+        _remaining = count;
+        return this;
+    }
+
+    /** Passes over the commits made before TIME, ending a first-parent
+     *  walk at the first one it meets.
+     *  @param  time  the earliest time, in milliseconds since the epoch
+     *  @return       this walk */
+    History since(long time) {
+        _since = time;
+        return this;
+    }
+
+    /** Passes over the commits made after TIME.
+     *  @param  time  the latest time, in milliseconds since the epoch
+     *  @return       this walk */
+    History until(long time) {
+        _until = time;
+        return this;
+    }
+
+    /** Passes over the commits that did not change the file or
+     *  directory PATH relative to their first parents. The changed-path
+     *  filters rule out most commits, so only the manifests of the few
+     *  they let through are compared.
+     *  @param  path  a file or directory name, without a trailing '/'
+     *  @return       this walk */
+    History path(String path) {
+        _path = path;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (_current == null && _remaining > 0) {
+            Commit commit = advance();
+            if (commit == null) {
+                _remaining = 0;
+                break;
+            }
+            long time = commit.getTime();
+            if (time < _since) {
+                if (_position < 0) {
+                    _remaining = 0;
+                }
+            } else if (time <= _until && changes(commit)) {
+                _current = commit;
+            }
+        }
+        return _current != null;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Commit commit = _current;
+        _current = null;
+        _remaining -= 1;
+        return commit;
+    }
+
+    /** Returns whether COMMIT changed the path this walk is limited to,
+     *  if any, relative to its first parent. */
+    private boolean changes(Commit commit) {
+        if (_path == null) {
+            return true;
+        }
+        if (!ChangedPaths.get().mayChange(commit.getSHA(), _path)) {
+            return false;
+        }
+        ObjectId parentID = commit.getParentID();
+        ObjectId before = parentID == null ? null
+            : Commit.read(parentID).getBlobs().idOf(_path);
+        ObjectId after = commit.getBlobs().idOf(_path);
+        return before == null ? after != null : !before.equals(after);
+    }
+
+    /** Returns the next commit of the walk, before any filtering, or
+     *  null if there are no more. */
+    private Commit advance() {
+        if (_position >= 0) {
+            _position -= 1;
+            return Commit.read(CommitGraph.get().id(_position + 1));
+        } else if (_next != null) {
+            Commit commit = Commit.read(_next);
+            _next = commit.getParentID();
+            return commit;
+        }
+        return null;
+    }
+
+    /** The next commit of a first-parent walk, or null. */
+    private ObjectId _next;
+
+    /** The position in the commit graph of the next commit of a walk
+     *  over the graph, or -1. */
+    private int _position;
+
+    /** The commit to be returned next, if it has been read. */
+    private Commit _current;
+
+    /** The number of commits still to be returned at most. */
+    private int _remaining = Integer.MAX_VALUE;
+
+    /** The path the commits must change, or null. */
+    private String _path;
+
+    /** The time range of the commits to return, in milliseconds. */
+    private long _since = Long.MIN_VALUE, _until = Long.MAX_VALUE;
+
+}
@@ -6,11 +6,36 @@ package gitlet;
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+     *  <COMMAND> <OPERAND> .... The command "daemon" starts a server
+     *  that keeps the repository loaded; while one is running, every
+     *  other command is handed to it. The command "batch [FILE]" runs
+     *  the commands in FILE, or on the standard input, in one process.
+     *  The commands "upload-pack" and "receive-pack" serve the other side
+     *  of a fetch or push from another repository, and are never handed
+     *  to a daemon. */
     public static void main(String... args) {
         /*for (String a: args) {
             System.out.println(a);
         }*/
+        if (args.length == 1 && args[0].equals("daemon")) {
+            Daemon.serve();
+            return;
+        }
+        if (args.length >= 1 && args.length <= 2 && args[0].equals("batch")) {
+            Batch.run(args.length == 2 ? args[1] : null);
+            return;
+        }
+        if (args.length == 1 && args[0].equals(Remote.UPLOAD)) {
+            Remote.upload();
+            return;
+        }
+        if (args.length == 1 && args[0].equals(Remote.RECEIVE)) {
+            Remote.receive();
+            return;
+        }
+        if (Daemon.forward(args)) {
+            return;
+        }
         CommandInterpreter interp = new CommandInterpreter(args);
         interp.processCommand();
     }
@@ -0,0 +1,211 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** The files tracked by a commit, as a tree of directories whose root
+ *  id is the id of the manifest. Since a directory's id is a hash of
+ *  its entries, two manifests agree on everything beneath a directory
+ *  whenever their directories there have the same id, and walks over
+ *  several manifests skip such subtrees without reading them.
+ *
+ *  Directories are immutable and shared, so copying a manifest takes
+ *  constant time, and a copy and its original share every directory
+ *  neither has changed since.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Manifest implements Iterable<Blob> {
+
+    /** Receives the files at which a walk over several manifests finds
+     *  them to differ. */
+    interface Visitor {
+        /** Returns whether the entries at one path, whose SHA IDs in each
+         *  manifest are IDS (null where there is no such entry), can be
+         *  passed over. Either all are files or all are directories.
+         *  @param  ids  the ids of the entries
+         *  @return      whether to skip them */
+        boolean skip(ObjectId[] ids);
+
+        /** Visits the file NAME, whose versions in each manifest are
+         *  BLOBS (null where it is absent).
+         *  @param  name   the name of the file
+         *  @param  blobs  its versions */
+        void visit(String name, Blob[] blobs);
+    }
+
+    /** An empty manifest. */
+    Manifest() {
+        _root = new Directory("");
+    }
+
+    /** A copy of OTHER, sharing all of its directories.
+     *  @param  other  the manifest to copy */
+    Manifest(Manifest other) {
+        _root = other._root;
+    }
+
+    /** Returns the stored manifest with id ID. Its directories are read
+     *  from the store only as they are needed.
+     *  @param  id  the SHA ID of the root directory
+     *  @return     the manifest */
+    static Manifest read(ObjectId id) {
+        Manifest manifest = new Manifest();
+        manifest._root = new Directory("", id);
+        return manifest;
+    }
+
+    /** Walks SIDES together in name order, calling VISITOR for each
+     *  file at which they differ in a way VISITOR does not skip.
+     *  Directories VISITOR skips are not read.
+     *  @param  sides    the manifests to walk
+     *  @param  visitor  the receiver of the differing files */
+    static void walk(Manifest[] sides, Visitor visitor) {
+        Directory[] roots = new Directory[sides.length];
+        ObjectId[] ids = new ObjectId[sides.length];
+        for (int k = 0; k < sides.length; k += 1) {
+            roots[k] = sides[k]._root;
+            ids[k] = roots[k].id();
+        }
+        if (!visitor.skip(ids)) {
+            walk(roots, "", visitor);
+        }
+    }
+
+    /** Walks the directories DIRS, any of which may be null, whose
+     *  entries are named PREFIX followed by their own names. */
+    private static void walk(Directory[] dirs, String prefix,
+                             Visitor visitor) {
+        int n = dirs.length;
+        TreeSet<String> names = new TreeSet<String>();
+        for (Directory dir : dirs) {
+            if (dir != null) {
+                for (Map.Entry<String, Object> e : dir.entries()) {
+                    names.add(e.getKey());
+                }
+            }
+        }
+        for (String name : names) {
+            Blob[] blobs = new Blob[n];
+            Directory[] subdirs = new Directory[n];
+            ObjectId[] blobIDs = new ObjectId[n], dirIDs = new ObjectId[n];
+            boolean anyBlob = false, anyDir = false;
+            for (int k = 0; k < n; k += 1) {
+                Object child = dirs[k] == null ? null
+                    : dirs[k].entries().get(name);
+                if (child instanceof Blob) {
+                    blobs[k] = (Blob) child;
+                    blobIDs[k] = blobs[k].getSHA();
+                    anyBlob = true;
+                } else if (child instanceof Directory) {
+                    subdirs[k] = (Directory) child;
+                    dirIDs[k] = subdirs[k].id();
+                    anyDir = true;
+                }
+            }
+            if (anyBlob && !visitor.skip(blobIDs)) {
+                visitor.visit(prefix + name, blobs);
+            }
+            if (anyDir && !visitor.skip(dirIDs)) {
+                walk(subdirs, prefix + name + "/", visitor);
+            }
+        }
+    }
+
+    /** Returns the SHA ID of this manifest, which is the id of its root
+     *  directory. Only directories changed since it was last computed
+     *  are hashed again.
+     *  @return  the SHA ID of this manifest */
+    ObjectId id() {
+        return _root.id();
+    }
+
+    /** Stores every directory of this manifest that is not already
+     *  stored. */
+    void write() {
+        _root.write();
+    }
+
+    /** Returns the blob called NAME, or null if there is none.
+     *  @param  name  the file name
+     *  @return       the blob called NAME */
+    Blob find(String name) {
+        return _root.find(name.split("/"), 0);
+    }
+
+    /** Returns the SHA ID of the file or directory called NAME, or null
+     *  if there is neither. Two manifests hold the same version of a
+     *  path exactly when they give it the same id.
+     *  @param  name  a file or directory name, without a trailing '/'
+     *  @return       its id, or null */
+    ObjectId idOf(String name) {
+        Object entry = _root.entry(name.split("/"), 0);
+        if (entry instanceof Blob) {
+            return ((Blob) entry).getSHA();
+        }
+        return entry == null ? null : ((Directory) entry).id();
+    }
+
+    /** Returns whether there is a blob called NAME.
+     *  @param  name  the file name
+     *  @return       whether NAME is tracked */
+    boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    /** Adds B, replacing any blob with the same name.
+     *  @param  b  the blob to add */
+    void add(Blob b) {
+        _root = _root.add(b.getName().split("/"), 0, b);
+    }
+
+    /** Removes the blob called NAME.
+     *  @param  name  the file name
+     *  @return       whether there was such a blob */
+    boolean remove(String name) {
+        Directory root = _root.remove(name.split("/"), 0);
+        if (root == _root) {
+            return false;
+        }
+        _root = root;
+        return true;
+    }
+
+    /** Returns the number of blobs in this manifest. This reads every
+     *  directory.
+     *  @return  the number of tracked files */
+    int size() {
+        return sorted().length;
+    }
+
+    /** Returns every blob of this manifest in tree order: by name within
+     *  each directory, with the contents of a subdirectory in the place
+     *  of its name. This reads every directory.
+     *  @return  the blobs */
+    Blob[] sorted() {
+        ArrayList<Blob> blobs = new ArrayList<Blob>();
+        _root.collect(blobs);
+        return blobs.toArray(new Blob[blobs.size()]);
+    }
+
+    @Override
+    public Iterator<Blob> iterator() {
+        return Arrays.asList(sorted()).iterator();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return id().equals(((Manifest) obj).id());
+    }
+
+    @Override
+    public int hashCode() {
+        return id().hashCode();
+    }
+
+    /** The root directory. */
+    private Directory _root;
+
+}
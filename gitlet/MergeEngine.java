@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.util.ArrayList;
+
+/** A three-way merge of two manifests against their common ancestor.
+ *  The engine walks the three manifest trees once, passing over every
+ *  subtree that is the same on both sides or that their side left as it
+ *  was at the split point, so a merge costs time in proportion to what
+ *  their side changed. It only looks at ids, so it needs neither the
+ *  working directory nor the contents of any file.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class MergeEngine {
+
+    /** What the merge does with one file. */
+    enum Action {
+        /** Their side left the file as it was, or agrees with ours;
+         *  keep our version. */
+        UNCHANGED,
+        /** Only their side changed the file; take their version. */
+        TAKE_THEIRS,
+        /** Their side deleted a file we did not change; delete it. */
+        DELETE,
+        /** Both sides changed the file in different ways. */
+        CONFLICT
+    }
+
+    /** The outcome of the merge for one file. */
+    static class Change {
+        /** A change of the file NAME, whose versions on our and their
+         *  side are OURS and THEIRS (null if absent), by ACTION. */
+        Change(String name, Action action, Blob ours, Blob theirs) {
+            this.name = name;
+            this.action = action;
+            this.ours = ours;
+            this.theirs = theirs;
+        }
+
+        /** The name of the file. */
+        final String name;
+
+        /** What the merge does with the file. */
+        final Action action;
+
+        /** Our version of the file, or null if we do not have it. */
+        final Blob ours;
+
+        /** Their version of the file, or null if they do not have it. */
+        final Blob theirs;
+    }
+
+    /** Merges THEIRS into OURS, where BASE is the manifest of the split
+     *  point of the two.
+     *  @param  base    the manifest of the common ancestor
+     *  @param  ours    the manifest of the current branch head
+     *  @param  theirs  the manifest of the given branch head */
+    MergeEngine(Manifest base, Manifest ours, Manifest theirs) {
+        Manifest.walk(new Manifest[] { base, ours, theirs },
+                      new Manifest.Visitor() {
+                public boolean skip(ObjectId[] ids) {
+                    return same(ids[1], ids[2]) || same(ids[0], ids[2]);
+                }
+
+                public void visit(String name, Blob[] blobs) {
+                    Action action = classify(blobs[0], blobs[1], blobs[2]);
+                    if (action == Action.CONFLICT) {
+                        _conflicts += 1;
+                    }
+                    if (action != Action.UNCHANGED) {
+                        _changes.add(new Change(name, action, blobs[1],
+                                                blobs[2]));
+                    }
+                }
+            });
+    }
+
+    /** Returns every file the merge does not leave unchanged, in tree
+     *  order.
+     *  @return  the changes of this merge */
+    ArrayList<Change> changes() {
+        return _changes;
+    }
+
+    /** Returns whether any file is in conflict.
+     *  @return  whether the merge has conflicts */
+    boolean hasConflicts() {
+        return _conflicts > 0;
+    }
+
+    /** Applies the files taken from their side to the manifest
+     *  WORKING, which must start out as a copy of our side. Conflicting
+     *  files are left alone.
+     *  @param  working  the manifest in progress on our side */
+    void apply(Manifest working) {
+        for (Change c : _changes) {
+            if (c.action == Action.TAKE_THEIRS) {
+                working.add(c.theirs);
+            } else if (c.action == Action.DELETE) {
+                working.remove(c.name);
+            }
+        }
+    }
+
+    /** Returns what to do with a file whose versions at the split point,
+     *  on our side and on their side are BASE, OURS and THEIRS, any of
+     *  which may be null if the file is absent there. */
+    private static Action classify(Blob base, Blob ours, Blob theirs) {
+        if (same(ours, theirs) || same(base, theirs)) {
+            return Action.UNCHANGED;
+        } else if (same(base, ours)) {
+            return theirs == null ? Action.DELETE : Action.TAKE_THEIRS;
+        } else {
+            return Action.CONFLICT;
+        }
+    }
+
+    /** Returns whether A and B are the same version of a file, counting
+     *  two absent files as the same. */
+    private static boolean same(Blob a, Blob b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.equals(b);
+    }
+
+    /** Returns whether the ids A and B are equal, counting two absent
+     *  entries as the same. */
+    private static boolean same(ObjectId a, ObjectId b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /** The files changed by this merge, in tree order. */
+    private ArrayList<Change> _changes = new ArrayList<Change>();
+
+    /** The number of conflicting files. */
+    private int _conflicts;
+
+}
@@ -0,0 +1,356 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Maps commit messages, and the words in them, to the ids of the
+ *  commits that have them.
+ *
+ *  The messages are kept in .gitlet/message-index, an 8-byte header
+ *  followed by one entry per commit in the order the commits were
+ *  written: the 20-byte commit id, the length of the message as a 4-byte
+ *  integer and the message in UTF-8. Entries are only ever appended, so
+ *  adding a commit costs the same however long the history is. An entry
+ *  cut short by a crash is ignored, and cut off by the next append.
+ *
+ *  Lookups go through .gitlet/message-table: an 8-byte header, the
+ *  length of the part of the message file it covers and the number N of
+ *  its records as 4-byte integers, and then N records, each the 8-byte
+ *  hash of a full message or of a word in one and the 4-byte offset in
+ *  the message file of an entry that has it, sorted by hash and then by
+ *  offset. A lookup binary searches the mapped table, checks the entries
+ *  it points to against the message or word, since different keys may
+ *  share a hash, and then reads the entries past the covered part
+ *  directly. The table is rewritten once those take more than
+ *  REBUILD_THRESHOLD bytes.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class MessageIndex {
+
+    /** The file holding the messages. */
+    static final File FILE = new File(".gitlet", "message-index");
+
+    /** The file holding the lookup table. */
+    static final File TABLE = new File(".gitlet", "message-table");
+
+    /** The first four bytes of the message file. */
+    private static final int MAGIC = 0x4d494458;
+
+    /** The first four bytes of the table file. */
+    private static final int TABLE_MAGIC = 0x4d544258;
+
+    /** The version of the file formats. */
+    private static final int VERSION = 1;
+
+    /** The size of the header of the message file in bytes. */
+    private static final int HEADER_SIZE = 8;
+
+    /** The size of the header, covered length and count of the table. */
+    private static final int TABLE_HEADER_SIZE = 16;
+
+    /** The size of one record of the table in bytes. */
+    private static final int RECORD_SIZE = 12;
+
+    /** The number of bytes of unindexed entries that triggers a rewrite
+     *  of the table. */
+    private static final int REBUILD_THRESHOLD = 64 * 1024;
+
+    /** Returns the message index of the repository in the current
+     *  directory.
+     *  @return  the message index */
+    static MessageIndex get() {
+        if (_index == null) {
+            _index = new MessageIndex();
+        }
+        return _index;
+    }
+
+    /** Appends the entry recording that the commit ID has the message
+     *  MESSAGE to the message file, first cutting off any entry left
+     *  incomplete, and rewrites the table if too much of the file lies
+     *  past it.
+     *  @param  id       the id of a commit that has been written
+     *  @param  message  its message */
+    void add(ObjectId id, String message) {
+        byte[] text = message.getBytes(UTF_8);
+        MappedByteBuffer log = map(FILE);
+        int covered = covered(log);
+        int end = log == null ? 0 : end(log, covered);
+        ByteBuffer entry = ByteBuffer.allocate((log == null ? 8 : 0) + 24
+                                               + text.length);
+        if (log == null) {
+            entry.putInt(MAGIC).putInt(VERSION);
+        }
+        id.write(entry);
+        entry.putInt(text.length).put(text).flip();
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.APPEND)) {
+            if (log != null && channel.size() > end) {
+                channel.truncate(end);
+            }
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (end + entry.limit() - covered > REBUILD_THRESHOLD) {
+            rebuild();
+        }
+    }
+
+    /** Rewrites the message file with the entries of only the commits in
+     *  LIVE, replacing it by renaming, and then the table. The old table
+     *  is removed first, so that meanwhile lookups read the whole file.
+     *  @param  live  the ids of the commits to keep */
+    static void retain(Set<ObjectId> live) {
+        MappedByteBuffer log = map(FILE);
+        if (log == null) {
+            return;
+        }
+        TABLE.delete();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] head = new byte[HEADER_SIZE];
+        log.get(0, head);
+        out.write(head, 0, head.length);
+        for (int offset = HEADER_SIZE, next;
+             (next = next(log, offset)) >= 0; offset = next) {
+            if (live.contains(ObjectId.read(log, offset))) {
+                byte[] entry = new byte[next - offset];
+                log.get(offset, entry);
+                out.write(entry, 0, entry.length);
+            }
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, out.toByteArray());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        get().rebuild();
+    }
+
+    /** Returns the ids of the commits whose message is exactly MESSAGE,
+     *  in the order they were made.
+     *  @param  message  a commit message
+     *  @return          the matching commit ids */
+    List<ObjectId> find(String message) {
+        return lookup(message, false);
+    }
+
+    /** Returns the ids of the commits whose message contains the word
+     *  WORD, ignoring case, in the order they were made.
+     *  @param  word  a single word
+     *  @return       the matching commit ids */
+    List<ObjectId> search(String word) {
+        return lookup(word.toLowerCase(), true);
+    }
+
+    /** Rewrites the table to cover every complete entry of the message
+     *  file. */
+    void rebuild() {
+        MappedByteBuffer log = map(FILE);
+        if (log == null) {
+            return;
+        }
+        ArrayList<long[]> records = new ArrayList<long[]>();
+        int end = HEADER_SIZE;
+        for (int next; (next = next(log, end)) >= 0; end = next) {
+            String message = message(log, end);
+            records.add(new long[] { hash(message, false), end });
+            for (String word : words(message)) {
+                records.add(new long[] { hash(word, true), end });
+            }
+        }
+        long[][] sorted = records.toArray(new long[records.size()][]);
+        Arrays.sort(sorted, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                                                   : Long.compare(a[1], b[1]));
+
+        ByteBuffer buf = ByteBuffer.allocate(TABLE_HEADER_SIZE
+                                             + sorted.length * RECORD_SIZE);
+        buf.putInt(TABLE_MAGIC).putInt(VERSION).putInt(end)
+            .putInt(sorted.length);
+        for (long[] record : sorted) {
+            buf.putLong(record[0]).putInt((int) record[1]);
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, TABLE.getParentFile());
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), TABLE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _table = null;
+    }
+
+    /** Returns the ids of the commits whose message is KEY or, if WORD,
+     *  contains the lower-case word KEY, in the order they were made. */
+    private List<ObjectId> lookup(String key, boolean word) {
+        ArrayList<ObjectId> ids = new ArrayList<ObjectId>();
+        MappedByteBuffer log = map(FILE);
+        if (log == null) {
+            return ids;
+        }
+        int covered = covered(log);
+        if (covered > HEADER_SIZE) {
+            long hash = hash(key, word);
+            int lo = 0, hi = _table.getInt(12);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (_table.getLong(record(mid)) < hash) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int i = lo; i < _table.getInt(12)
+                     && _table.getLong(record(i)) == hash; i += 1) {
+                int offset = _table.getInt(record(i) + 8);
+                if (matches(log, offset, key, word)) {
+                    ids.add(ObjectId.read(log, offset));
+                }
+            }
+        }
+        for (int offset = covered, next;
+             (next = next(log, offset)) >= 0; offset = next) {
+            if (matches(log, offset, key, word)) {
+                ids.add(ObjectId.read(log, offset));
+            }
+        }
+        return ids;
+    }
+
+    /** Returns the length of the part of the message file LOG covered by
+     *  the table, mapping the table if it is not mapped yet. The table is
+     *  not used, and only the header is counted as covered, if there is
+     *  none or if it covers more than LOG holds, as it may for a moment
+     *  while gc replaces both. */
+    private int covered(MappedByteBuffer log) {
+        if (_table == null) {
+            _table = map(TABLE);
+        }
+        if (log == null || _table == null) {
+            return HEADER_SIZE;
+        }
+        if (_table.getInt(0) != TABLE_MAGIC || _table.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("bad message-table file");
+        }
+        int covered = _table.getInt(8);
+        return covered <= log.limit() ? covered : HEADER_SIZE;
+    }
+
+    /** Returns the offset of record I of the table. */
+    private static int record(int i) {
+        return TABLE_HEADER_SIZE + i * RECORD_SIZE;
+    }
+
+    /** Returns whether the entry at OFFSET of LOG has the message KEY or,
+     *  if WORD, contains the word KEY. */
+    private static boolean matches(ByteBuffer log, int offset, String key,
+                                   boolean word) {
+        if (offset < HEADER_SIZE || next(log, offset) < 0) {
+            return false;
+        }
+        String message = message(log, offset);
+        return word ? words(message).contains(key) : message.equals(key);
+    }
+
+    /** Returns the offset just past the entry at OFFSET of LOG, or -1 if
+     *  there is no complete entry there. */
+    private static int next(ByteBuffer log, int offset) {
+        if (log.limit() - offset < 24) {
+            return -1;
+        }
+        int length = log.getInt(offset + 20);
+        if (length < 0 || length > log.limit() - offset - 24) {
+            return -1;
+        }
+        return offset + 24 + length;
+    }
+
+    /** Returns the offset just past the last complete entry of LOG,
+     *  reading the entries from FROM on. */
+    private static int end(ByteBuffer log, int from) {
+        int offset = from;
+        while (next(log, offset) >= 0) {
+            offset = next(log, offset);
+        }
+        return offset;
+    }
+
+    /** Returns the message of the complete entry at OFFSET of LOG. */
+    private static String message(ByteBuffer log, int offset) {
+        byte[] text = new byte[log.getInt(offset + 20)];
+        log.get(offset + 24, text);
+        return new String(text, UTF_8);
+    }
+
+    /** Returns the distinct lower-case words of MESSAGE. */
+    private static LinkedHashSet<String> words(String message) {
+        LinkedHashSet<String> words = new LinkedHashSet<String>();
+        for (String word : message.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /** Returns the 64-bit FNV-1a hash of the UTF-8 bytes of KEY, marked
+     *  as a word if WORD, so that a message and a word of the same text
+     *  have different hashes. */
+    private static long hash(String key, boolean word) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ (word ? 'w' : 'm')) * 0x100000001b3L;
+        for (byte b : key.getBytes(UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** Maps FILE, checking its header if it is the message file, or
+     *  returns null if it does not exist. */
+    private static MappedByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                 StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                              channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (file.equals(FILE) && (buf.limit() < HEADER_SIZE
+            || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)) {
+            throw new IllegalArgumentException("bad message-index file");
+        }
+        return buf;
+    }
+
+    /** The index of the repository in the current directory. */
+    private static MessageIndex _index;
+
+    /** The mapped table file, or null if it is not mapped. */
+    private MappedByteBuffer _table;
+
+}
@@ -0,0 +1,163 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+
+/** The SHA-1 id of a stored object. The 20 bytes are held as three
+ *  words, so ids are compared, hashed and used as keys without touching
+ *  arrays or strings; hex digits are produced only to show an id or to
+ *  name a file after it.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** The size of an id in bytes. */
+    static final int SIZE = 20;
+
+    /** The id whose bytes, read big-endian, are W0, W1 and W2. */
+    private ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the id whose bytes are RAW[OFFSET .. OFFSET + 19].
+     *  @param  raw     an array holding an id
+     *  @param  offset  the index of its first byte
+     *  @return         the id */
+    static ObjectId fromBytes(byte[] raw, int offset) {
+        return read(ByteBuffer.wrap(raw), offset);
+    }
+
+    /** Returns the id stored in BUF at index INDEX, without moving the
+     *  position of BUF.
+     *  @param  buf    a buffer holding an id
+     *  @param  index  the index of its first byte
+     *  @return        the id */
+    static ObjectId read(ByteBuffer buf, int index) {
+        return new ObjectId(buf.getLong(index), buf.getLong(index + 8),
+                            buf.getInt(index + 16));
+    }
+
+    /** Returns the id stored at the position of BUF, and moves past it.
+     *  @param  buf  a buffer holding an id
+     *  @return      the id */
+    static ObjectId read(ByteBuffer buf) {
+        return new ObjectId(buf.getLong(), buf.getLong(), buf.getInt());
+    }
+
+    /** Returns the id denoted by the 40 hex digits HEX. Throws
+     *  IllegalArgumentException if HEX is not such a string.
+     *  @param  hex  an id in hex
+     *  @return      the id */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != 2 * SIZE) {
+            throw new IllegalArgumentException("bad object id: " + hex);
+        }
+        return new ObjectId(parse(hex, 0, 16), parse(hex, 16, 16),
+                            (int) parse(hex, 32, 8));
+    }
+
+    /** Writes this id at the position of BUF, and moves past it.
+     *  @param  buf  the buffer to write to */
+    void write(ByteBuffer buf) {
+        buf.putLong(_w0).putLong(_w1).putInt(_w2);
+    }
+
+    /** Returns the bytes of this id.
+     *  @return  a new array of 20 bytes */
+    byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(SIZE);
+        write(buf);
+        return buf.array();
+    }
+
+    /** Returns the first byte of this id, from 0 to 255.
+     *  @return  the first byte */
+    int firstByte() {
+        return (int) (_w0 >>> 56);
+    }
+
+    /** Compares this id with the id stored in BUF at index INDEX, as
+     *  unsigned bytes, without reading it into a new object.
+     *  @param  buf    a buffer holding an id
+     *  @param  index  the index of its first byte
+     *  @return        a negative, zero or positive number */
+    int compareTo(ByteBuffer buf, int index) {
+        int c = Long.compareUnsigned(_w0, buf.getLong(index));
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, buf.getLong(index + 8));
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, buf.getInt(index + 16));
+        }
+        return c;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return c;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    /** Returns the 40 hex digits of this id. */
+    @Override
+    public String toString() {
+        char[] hex = new char[2 * SIZE];
+        format(_w0, hex, 0, 16);
+        format(_w1, hex, 16, 16);
+        format(_w2 & 0xffffffffL, hex, 32, 8);
+        return new String(hex);
+    }
+
+    /** Returns the number denoted by the COUNT hex digits of HEX
+     *  starting at index START. */
+    private static long parse(String hex, int start, int count) {
+        long value = 0;
+        for (int i = start; i < start + count; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("bad object id: " + hex);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /** Writes the low COUNT hex digits of VALUE into OUT at START. */
+    private static void format(long value, char[] out, int start, int count) {
+        for (int i = start + count - 1; i >= start; i -= 1) {
+            out[i] = DIGITS[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+
+    /** The hex digits. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** The first sixteen bytes, eight to a word. */
+    private final long _w0, _w1;
+
+    /** The last four bytes. */
+    private final int _w2;
+
+}
@@ -0,0 +1,266 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The content-addressable object database of a gitlet repository.
+ *  Every blob, manifest and commit is first kept as a loose object under
+ *  .gitlet/objects/xx/yyyy..., where xx are the first two hex digits of
+ *  its SHA ID, and is written at most once. The repack command later
+ *  moves objects into packs, which are searched when an object is not
+ *  found loose, and gc removes the objects nothing refers to.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class ObjectStore {
+
+    /** The directory holding all loose objects. */
+    static final File OBJECTS = new File(".gitlet", "objects");
+
+    /** Returns the file that holds (or would hold) the object ID. The
+     *  first two hex digits name a fan-out directory so that no single
+     *  directory grows past a few thousand entries.
+     *  @param  id  the SHA ID of the object
+     *  @return     the loose object file for ID */
+    static File objectFile(ObjectId id) {
+        String hex = id.toString();
+        return new File(new File(OBJECTS, hex.substring(0, 2)),
+                hex.substring(2));
+    }
+
+    /** Returns whether the object ID is already in the store.
+     *  @param  id  the SHA ID of the object
+     *  @return     whether the object exists */
+    static boolean contains(ObjectId id) {
+        if (objectFile(id).isFile()) {
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Stores CONTENTS under ID, unless a loose object with that ID
+     *  already exists, in which case it is freshened instead. The object
+     *  is written to a temporary file and renamed into place, so readers
+     *  never see a partially written object.
+     *  @param  id        the SHA ID of the object
+     *  @param  contents  the bytes of the object */
+    static void write(ObjectId id, byte[] contents) {
+        if (freshen(id)) {
+            return;
+        }
+        File file = objectFile(id);
+        File dir = file.getParentFile();
+        dir.mkdirs();
+        try {
+            File temp = File.createTempFile("tmp_", null, dir);
+            Utils.writeContents(temp, contents);
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stores the contents of SOURCE and returns their SHA ID. The
+     *  contents are hashed as they are copied to a temporary file, which
+     *  is then renamed to the object of that ID, so the object always
+     *  holds what its ID says even if SOURCE changes meanwhile. If a loose
+     *  object with that ID already exists, it is freshened and the copy
+     *  dropped. SOURCE is never held in memory as a whole.
+     *  @param  source  the file holding the bytes of the object
+     *  @return         the SHA ID of the object */
+    static ObjectId write(File source) {
+        OBJECTS.mkdirs();
+        try {
+            File temp = File.createTempFile("tmp_", null, OBJECTS);
+            ObjectId id;
+            try (FileChannel out = FileChannel.open(temp.toPath(),
+                     StandardOpenOption.WRITE)) {
+                id = Utils.hash(source, out);
+            } catch (IllegalArgumentException excp) {
+                temp.delete();
+                throw excp;
+            }
+            if (freshen(id)) {
+                temp.delete();
+                return id;
+            }
+            File file = objectFile(id);
+            file.getParentFile().mkdirs();
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return id;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns whether the object ID is already stored loose, and if it
+     *  is, sets the time of its file to now. An object stored again may
+     *  be about to be referred to once more, so gc must count it as
+     *  recently written and keep it through the grace period. A packed
+     *  object is written loose again instead of touching its pack, which
+     *  would restart the clock of every other object in the pack. */
+    static boolean freshen(ObjectId id) {
+        return objectFile(id).setLastModified(System.currentTimeMillis());
+    }
+
+    /** Copies the object ID from its pack to a loose file, unless it is
+     *  loose already, and sets the time of the file to TIME.
+     *  @param  id    the SHA ID of a packed object
+     *  @param  time  the time to give the file, in milliseconds */
+    static void loosen(ObjectId id, long time) {
+        File file = objectFile(id);
+        if (file.isFile()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        dir.mkdirs();
+        try {
+            File temp = File.createTempFile("tmp_", null, dir);
+            Utils.writeContents(temp, read(id));
+            temp.setLastModified(time);
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of the object ID. Throws
+     *  IllegalArgumentException if there is no such object. If the object
+     *  is not found, the packs on disk are looked at again before giving
+     *  up, since gc may have moved it from a loose file or an old pack
+     *  into a new pack meanwhile.
+     *  @param  id  the SHA ID of the object
+     *  @return     the bytes of the object */
+    static byte[] read(ObjectId id) {
+        for (int attempt = 0; attempt < 2; attempt += 1) {
+            try {
+                return Files.readAllBytes(objectFile(id).toPath());
+            } catch (IOException excp) {
+                /* Not loose; look in the packs. */
+            }
+            for (Pack pack : packs()) {
+                byte[] contents = pack.read(id);
+                if (contents != null) {
+                    return contents;
+                }
+            }
+            reloadPacks();
+        }
+        throw new IllegalArgumentException("No object with that id.");
+    }
+
+    /** Writes the contents of the object ID to TARGET, replacing what
+     *  it held. The contents are streamed: a loose object is copied
+     *  channel to channel, which the operating system may do without
+     *  passing the bytes through the heap, and a packed object is
+     *  inflated straight into TARGET. Throws IllegalArgumentException if
+     *  there is no such object. As with read, the packs are looked at
+     *  again before giving up.
+     *  @param  id      the SHA ID of the object
+     *  @param  target  the file to write */
+    static void copyTo(ObjectId id, File target) {
+        try (FileChannel out = FileChannel.open(target.toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int attempt = 0; attempt < 2; attempt += 1) {
+                try (FileChannel in = FileChannel.open(
+                         objectFile(id).toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long n = 0; n < size; ) {
+                        n += in.transferTo(n, size - n, out);
+                    }
+                    return;
+                } catch (NoSuchFileException excp) {
+                    /* Not loose; look in the packs. */
+                }
+                for (Pack pack : packs()) {
+                    if (pack.copyTo(id, out)) {
+                        return;
+                    }
+                }
+                reloadPacks();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        throw new IllegalArgumentException("No object with that id.");
+    }
+
+    /** Returns the ids of all loose objects.
+     *  @return  the loose object ids */
+    static ArrayList<ObjectId> looseIDs() {
+        ArrayList<ObjectId> ids = new ArrayList<ObjectId>();
+        File[] dirs = OBJECTS.listFiles();
+        if (dirs == null) {
+            return ids;
+        }
+        for (File dir : dirs) {
+            List<String> names = Utils.plainFilenamesIn(dir);
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                if (!name.startsWith("tmp_")) {
+                    ids.add(ObjectId.fromHex(dir.getName() + name));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Returns the packs of the repository, opening them the first time
+     *  they are needed.
+     *  @return  the open packs */
+    static synchronized ArrayList<Pack> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<Pack>();
+            File[] files = Pack.DIR.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.getName().endsWith(".idx")) {
+                        continue;
+                    }
+                    try {
+                        _packs.add(new Pack(file));
+                    } catch (IllegalArgumentException excp) {
+                        /* gc may have removed the pack since it was
+                         * listed; any other failure is an error. */
+                        if (file.isFile()) {
+                            throw excp;
+                        }
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Closes all open packs, so that the next lookup sees the packs
+     *  currently on disk. */
+    static synchronized void reloadPacks() {
+        if (_packs != null) {
+            for (Pack pack : _packs) {
+                pack.close();
+            }
+        }
+        _packs = null;
+    }
+
+    /** The open packs, or null if they have not been opened yet. */
+    private static ArrayList<Pack> _packs;
+
+}
@@ -0,0 +1,329 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** A packfile: many objects in one file, each stored either whole or as
+ *  a delta against an earlier object in the same pack, and compressed.
+ *
+ *  A pack file pack-X.pack starts with a 12-byte header (magic, version
+ *  and object count) and then holds one entry per object: a kind byte
+ *  (FULL or DELTA), for a delta the 8-byte offset of its base entry,
+ *  the 4-byte length of the stored data before and after compression,
+ *  and the zlib-compressed data. Its index pack-X.idx starts with the
+ *  same kind of header, then a 256-entry fan-out table, the sorted
+ *  20-byte ids of the objects, and the 8-byte offset of each id's entry.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Pack {
+
+    /** The directory holding all packs. */
+    static final File DIR = new File(".gitlet", "pack");
+
+    /** The first four bytes of a pack file. */
+    static final int PACK_MAGIC = 0x47504b46;
+
+    /** The first four bytes of a pack index. */
+    static final int INDEX_MAGIC = 0x47504b49;
+
+    /** The version of both file formats. */
+    static final int VERSION = 1;
+
+    /** Kind of an entry holding a whole object. */
+    static final byte FULL = 0;
+
+    /** Kind of an entry holding a delta against another entry. */
+    static final byte DELTA = 1;
+
+    /** The size of the header, count and fan-out table of an index. */
+    static final int TABLE_SIZE = 12 + 256 * 4;
+
+    /** The size of one id in bytes. */
+    static final int ID_SIZE = 20;
+
+    /** The size of the buffers used to inflate an object into a file. */
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    /** Opens the pack whose index is INDEX.
+     *  @param  index  a pack-X.idx file */
+    Pack(File index) {
+        _indexFile = index;
+        String name = index.getName();
+        _packFile = new File(index.getParentFile(),
+                name.substring(0, name.length() - 4) + ".pack");
+        try (FileChannel channel = FileChannel.open(index.toPath(),
+                 StandardOpenOption.READ)) {
+            _index = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                 channel.size());
+            _pack = FileChannel.open(_packFile.toPath(),
+                                     StandardOpenOption.READ);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_index.getInt(0) != INDEX_MAGIC || _index.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("bad pack index");
+        }
+        _count = _index.getInt(8);
+    }
+
+    /** Opens the pack file PACK, which has no index yet, so that its
+     *  entries can be read by offset while it is being indexed.
+     *  @param  pack  a pack file
+     *  @return       the pack, which must not be looked up by id */
+    static Pack unindexed(File pack) {
+        try {
+            return new Pack(FileChannel.open(pack.toPath(),
+                                             StandardOpenOption.READ));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** A pack read through PACK, with no index. */
+    private Pack(FileChannel pack) {
+        _pack = pack;
+    }
+
+    /** Returns the pack file.
+     *  @return  the pack file */
+    File packFile() {
+        return _packFile;
+    }
+
+    /** Returns the index file.
+     *  @return  the index file */
+    File indexFile() {
+        return _indexFile;
+    }
+
+    /** Returns the number of objects in this pack.
+     *  @return  the number of objects */
+    int size() {
+        return _count;
+    }
+
+    /** Returns the I-th id of this pack, in sorted order.
+     *  @param  i  an index less than size()
+     *  @return    the id */
+    ObjectId id(int i) {
+        return ObjectId.read(_index, TABLE_SIZE + i * ID_SIZE);
+    }
+
+    /** Returns the file of reachability bitmaps of this pack, which
+     *  may not exist.
+     *  @return  the bitmap file */
+    File bitmapFile() {
+        String name = _indexFile.getName();
+        return new File(_indexFile.getParentFile(),
+                name.substring(0, name.length() - 4) + ".bitmap");
+    }
+
+    /** Returns the position of the object ID among the sorted ids of
+     *  this pack, or -1 if it is not in this pack.
+     *  @param  id  an object id
+     *  @return     its position */
+    int position(ObjectId id) {
+        return find(id);
+    }
+
+    /** Returns whether this pack holds the object ID.
+     *  @param  id  an object id
+     *  @return     whether ID is in this pack */
+    boolean contains(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the contents of the object ID, or null if it is not in
+     *  this pack.
+     *  @param  id  an object id
+     *  @return     the bytes of the object */
+    byte[] read(ObjectId id) {
+        int i = find(id);
+        if (i < 0) {
+            return null;
+        }
+        return readAt(offset(i));
+    }
+
+    /** Writes the contents of the object ID to OUT, if it is in this
+     *  pack. A whole object is inflated a buffer at a time straight into
+     *  OUT; a delta is resolved in memory first.
+     *  @param  id   an object id
+     *  @param  out  the channel to write to
+     *  @return      whether ID is in this pack */
+    boolean copyTo(ObjectId id, WritableByteChannel out) {
+        int i = find(id);
+        if (i < 0) {
+            return false;
+        }
+        long offset = offset(i);
+        ByteBuffer head = ByteBuffer.allocate(17);
+        read(head, offset);
+        head.flip();
+        try {
+            if (head.get() == DELTA) {
+                ByteBuffer data = ByteBuffer.wrap(readAt(offset));
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                return true;
+            }
+            int length = head.getInt();
+            int compressed = head.getInt();
+            long position = offset + head.position();
+            long end = position + compressed;
+            ByteBuffer in = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            byte[] buf = new byte[COPY_BUFFER_SIZE];
+            Inflater inflater = new Inflater();
+            try {
+                int n = 0;
+                while (n < length && !inflater.finished()) {
+                    if (inflater.needsInput() && position < end) {
+                        in.clear();
+                        in.limit((int) Math.min(in.capacity(),
+                                                end - position));
+                        read(in, position);
+                        position += in.position();
+                        inflater.setInput(in.array(), 0, in.position());
+                    }
+                    int k = inflater.inflate(buf);
+                    if (k == 0 && inflater.needsInput() && position >= end) {
+                        throw new IllegalArgumentException(
+                            "corrupt pack entry");
+                    }
+                    ByteBuffer chunk = ByteBuffer.wrap(buf, 0, k);
+                    while (chunk.hasRemaining()) {
+                        out.write(chunk);
+                    }
+                    n += k;
+                }
+            } catch (DataFormatException excp) {
+                throw new IllegalArgumentException("corrupt pack entry");
+            } finally {
+                inflater.end();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return true;
+    }
+
+    /** Returns the offset in the pack file of the entry of the I-th id.
+     *  @param  i  an index less than size()
+     *  @return    the offset of its entry */
+    long offset(int i) {
+        return _index.getLong(TABLE_SIZE + _count * ID_SIZE + 8 * i);
+    }
+
+    /** Returns the stored data of the entry at OFFSET, undoing deltas.
+     *  @param  offset  the offset of an entry
+     *  @return         the bytes of the object */
+    byte[] readAt(long offset) {
+        ByteBuffer head = ByteBuffer.allocate(17);
+        read(head, offset);
+        head.flip();
+        byte kind = head.get();
+        long base = kind == DELTA ? head.getLong() : -1;
+        int length = head.getInt();
+        byte[] compressed = new byte[head.getInt()];
+        read(ByteBuffer.wrap(compressed), offset + head.position());
+
+        byte[] data = inflate(compressed, length);
+        if (kind == DELTA) {
+            return Delta.apply(readAt(base), data);
+        }
+        return data;
+    }
+
+    /** Returns the LENGTH bytes of stored data compressed in COMPRESSED.
+     *  @param  compressed  the data of an entry, compressed with zlib
+     *  @param  length      its length before compression
+     *  @return             the data */
+    static byte[] inflate(byte[] compressed, int length) {
+        byte[] data = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int k = inflater.inflate(data, n, length - n);
+                if (k == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("corrupt pack entry");
+                }
+                n += k;
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException("corrupt pack entry");
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /** Closes the pack file. */
+    void close() {
+        try {
+            _pack.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the index of ID among the sorted ids, or -1. */
+    private int find(ObjectId id) {
+        int first = id.firstByte();
+        int lo = first == 0 ? 0 : _index.getInt(12 + 4 * (first - 1));
+        int hi = _index.getInt(12 + 4 * first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = id.compareTo(_index, TABLE_SIZE + mid * ID_SIZE);
+            if (c == 0) {
+                return mid;
+            } else if (c > 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Fills BUF from the pack file starting at OFFSET, or until the end
+     *  of the file. */
+    private void read(ByteBuffer buf, long offset) {
+        try {
+            while (buf.hasRemaining()) {
+                int n = _pack.read(buf, offset);
+                if (n < 0) {
+                    break;
+                }
+                offset += n;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The pack file. */
+    private File _packFile;
+
+    /** The index file. */
+    private File _indexFile;
+
+    /** The mapped index. */
+    private MappedByteBuffer _index;
+
+    /** The open pack file. */
+    private FileChannel _pack;
+
+    /** The number of objects in the pack. */
+    private int _count;
+
+}
@@ -0,0 +1,454 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/** Writes packs. Objects are grouped so that each one can be stored as
+ *  a delta against a similar object written just before it: every
+ *  version of a directory against the previous version of the same
+ *  directory, and every version of a file against the previous version
+ *  of the same file. Objects larger than MAX_PACKED_SIZE are left loose,
+ *  since an entry records its length in 4 bytes and objects are read
+ *  whole to be packed.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class PackWriter {
+
+    /** The longest chain of deltas an object may sit at the end of, which
+     *  bounds the work of reading it back. */
+    private static final int MAX_DEPTH = 50;
+
+    /** The size in bytes of the largest object that is packed. */
+    static final long MAX_PACKED_SIZE = 1L << 30;
+
+    /** Returns whether the object ID is small enough to be packed. Only
+     *  a loose object can be too large.
+     *  @param  id  the SHA ID of an object
+     *  @return     whether writeAll packs it */
+    static boolean packable(ObjectId id) {
+        return ObjectStore.objectFile(id).length() <= MAX_PACKED_SIZE;
+    }
+
+    /** Moves every object of the repository, loose or packed, into a
+     *  single new pack, removes the loose objects and old packs, and
+     *  stores reachability bitmaps with the new pack. Objects too large
+     *  to be packed stay loose. */
+    static void repack() {
+        ArrayList<Pack> oldPacks = ObjectStore.packs();
+        ArrayList<ObjectId> loose = ObjectStore.looseIDs();
+        HashSet<ObjectId> all = new HashSet<ObjectId>(loose);
+        for (Pack pack : oldPacks) {
+            for (int i = 0; i < pack.size(); i += 1) {
+                all.add(pack.id(i));
+            }
+        }
+        if (all.isEmpty()) {
+            return;
+        }
+
+        PackWriter writer = new PackWriter();
+        writer.writeAll(all);
+        File index = writer.finish();
+
+        removePacks(oldPacks, index);
+        for (ObjectId id : loose) {
+            if (packable(id)) {
+                ObjectStore.objectFile(id).delete();
+            }
+        }
+        for (Pack pack : ObjectStore.packs()) {
+            if (pack.indexFile().equals(index)) {
+                Reachability.write(pack);
+            }
+        }
+    }
+
+    /** Deletes the packs OLD, which the pack whose index is INDEX has
+     *  replaced, and makes the store look at the packs on disk again. A
+     *  pack is named after the ids it holds, so packing the same objects
+     *  again gives the same name, and the new pack is then one of OLD;
+     *  it is kept.
+     *  @param  old    the packs to delete
+     *  @param  index  the index of the new pack, or null if there is none */
+    static void removePacks(ArrayList<Pack> old, File index) {
+        for (Pack pack : old) {
+            pack.close();
+            if (pack.indexFile().equals(index)) {
+                continue;
+            }
+            pack.indexFile().delete();
+            pack.packFile().delete();
+            pack.bitmapFile().delete();
+        }
+        ObjectStore.reloadPacks();
+    }
+
+    /** A writer of a new pack in Pack.DIR. */
+    PackWriter() {
+        Pack.DIR.mkdirs();
+        try {
+            _temp = File.createTempFile("tmp_", null, Pack.DIR);
+            _out = new BufferedOutputStream(new FileOutputStream(_temp));
+            _out.write(new byte[12]);
+            _offset = 12;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** A writer of a pack streamed to OUT, whose header has already
+     *  been written. */
+    private PackWriter(OutputStream out) {
+        _out = out;
+        _offset = 12;
+    }
+
+    /** Writes a pack of the objects IDS to OUT as it is made, in the
+     *  form of a pack file, without storing it. The object count in the
+     *  header comes first, so the receiver can read it as it arrives.
+     *  Throws IllegalArgumentException before writing anything if an
+     *  object is too large to be packed.
+     *  @param  ids  the objects to send
+     *  @param  out  the stream to write the pack to */
+    static void send(HashSet<ObjectId> ids, OutputStream out) {
+        for (ObjectId id : ids) {
+            if (!packable(id)) {
+                throw new IllegalArgumentException(
+                    "Cannot send a file larger than 1 GB.");
+            }
+        }
+        ByteBuffer head = ByteBuffer.allocate(12);
+        head.putInt(Pack.PACK_MAGIC).putInt(Pack.VERSION).putInt(ids.size());
+        try {
+            out.write(head.array());
+            new PackWriter(out).writeAll(ids);
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Reads a pack written by send from IN and stores it as a new pack
+     *  with its index. The id of every object is computed from its
+     *  contents rather than trusted, and a delta may only refer to an
+     *  earlier entry. Each entry is decoded as it arrives when its base
+     *  is the entry just before it, as writeAll arranges; any other is
+     *  read back from the pack once the whole of it is stored.
+     *  @param  in  the stream to read the pack from
+     *  @return     the index of the new pack, or null if it was empty */
+    static File receive(InputStream in) {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readInt() != Pack.PACK_MAGIC
+                || data.readInt() != Pack.VERSION) {
+                throw new IllegalArgumentException("bad pack");
+            }
+            int count = data.readInt();
+            if (count == 0) {
+                return null;
+            }
+            PackWriter writer = new PackWriter();
+            ArrayList<Long> later = new ArrayList<Long>();
+            long previousOffset = -1;
+            byte[] previous = null;
+            for (int i = 0; i < count; i += 1) {
+                long offset = writer._offset;
+                byte kind = data.readByte();
+                long base = kind == Pack.DELTA ? data.readLong() : -1;
+                int length = data.readInt();
+                byte[] compressed = new byte[data.readInt()];
+                data.readFully(compressed);
+                if (kind != Pack.FULL && kind != Pack.DELTA
+                    || kind == Pack.DELTA && (base < 12 || base >= offset)) {
+                    throw new IllegalArgumentException("bad pack");
+                }
+
+                ByteBuffer head = ByteBuffer.allocate(17);
+                head.put(kind);
+                if (kind == Pack.DELTA) {
+                    head.putLong(base);
+                }
+                head.putInt(length).putInt(compressed.length);
+                writer._out.write(head.array(), 0, head.position());
+                writer._out.write(compressed);
+                writer._offset += head.position() + compressed.length;
+
+                byte[] contents = null;
+                if (kind == Pack.FULL) {
+                    contents = Pack.inflate(compressed, length);
+                } else if (base == previousOffset) {
+                    contents = Delta.apply(previous,
+                                           Pack.inflate(compressed, length));
+                }
+                if (contents == null) {
+                    later.add(offset);
+                } else {
+                    writer.received(Utils.hash(contents), offset);
+                }
+                previousOffset = offset;
+                previous = contents;
+            }
+            writer._out.flush();
+            if (!later.isEmpty()) {
+                Pack pack = Pack.unindexed(writer._temp);
+                try {
+                    for (long offset : later) {
+                        writer.received(Utils.hash(pack.readAt(offset)),
+                                        offset);
+                    }
+                } finally {
+                    pack.close();
+                }
+            }
+            return writer.finish();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Records that the object ID is the entry at OFFSET of a received
+     *  pack. */
+    private void received(ObjectId id, long offset) {
+        if (_offsets.containsKey(id)) {
+            throw new IllegalArgumentException("bad pack");
+        }
+        _offsets.put(id, offset);
+    }
+
+    /** Writes every object in IDS that is not too large to be packed.
+     *  Commits come first, then the versions of each directory and of
+     *  each file in commit order, and then anything no commit refers
+     *  to. */
+    void writeAll(HashSet<ObjectId> ids) {
+        ArrayList<ObjectId> commits = new ArrayList<ObjectId>();
+        LinkedHashMap<String, ArrayList<ObjectId>> versions =
+            new LinkedHashMap<String, ArrayList<ObjectId>>();
+        HashSet<ObjectId> seen = new HashSet<ObjectId>();
+
+        CommitGraph graph = CommitGraph.get();
+        for (int pos = 0; pos < graph.size(); pos += 1) {
+            ObjectId id = graph.id(pos);
+            if (!ids.contains(id) || !seen.add(id)) {
+                continue;
+            }
+            commits.add(id);
+            ObjectId manifestID = Commit.read(id).getManifestID();
+            collect(new Directory("", manifestID), ids, seen, versions);
+        }
+
+        for (ObjectId id : commits) {
+            addWhole(id);
+        }
+        for (ArrayList<ObjectId> chain : versions.values()) {
+            writeChain(chain);
+        }
+        ArrayList<ObjectId> rest = new ArrayList<ObjectId>();
+        for (ObjectId id : ids) {
+            if (!seen.contains(id)) {
+                rest.add(id);
+            }
+        }
+        for (ObjectId id : rest) {
+            addWhole(id);
+        }
+    }
+
+    /** Adds DIR and everything beneath it that is in IDS and not yet in
+     *  SEEN to SEEN and to the list of versions of its path in VERSIONS.
+     *  Directories already seen are not read again, so each stored
+     *  directory is read once however many commits share it. */
+    private static void collect(Directory dir, HashSet<ObjectId> ids,
+                                HashSet<ObjectId> seen,
+                                LinkedHashMap<String, ArrayList<ObjectId>>
+                                versions) {
+        if (!ids.contains(dir.id()) || !seen.add(dir.id())) {
+            return;
+        }
+        versionsOf(versions, dir.prefix()).add(dir.id());
+        for (Map.Entry<String, Object> e : dir.entries()) {
+            Object child = e.getValue();
+            if (child instanceof Directory) {
+                collect((Directory) child, ids, seen, versions);
+            } else {
+                Blob b = (Blob) child;
+                if (ids.contains(b.getSHA()) && seen.add(b.getSHA())) {
+                    versionsOf(versions, b.getName()).add(b.getSHA());
+                }
+            }
+        }
+    }
+
+    /** Returns the list of versions of PATH in VERSIONS, adding an empty
+     *  one if there is none. */
+    private static ArrayList<ObjectId> versionsOf(
+        LinkedHashMap<String, ArrayList<ObjectId>> versions, String path) {
+        ArrayList<ObjectId> list = versions.get(path);
+        if (list == null) {
+            list = new ArrayList<ObjectId>();
+            versions.put(path, list);
+        }
+        return list;
+    }
+
+    /** Writes the objects IDS in order, each as a delta against the one
+     *  before it when that is worthwhile. */
+    private void writeChain(ArrayList<ObjectId> ids) {
+        byte[] previous = null;
+        ObjectId previousID = null;
+        for (ObjectId id : ids) {
+            if (!packable(id)) {
+                continue;
+            }
+            byte[] contents = ObjectStore.read(id);
+            add(id, contents, previousID, previous);
+            previous = contents;
+            previousID = id;
+        }
+    }
+
+    /** Writes the object ID whole, reading it from the store, unless it
+     *  is too large to be packed. */
+    private void addWhole(ObjectId id) {
+        if (packable(id)) {
+            add(id, ObjectStore.read(id), null, null);
+        }
+    }
+
+    /** Writes the object ID with contents CONTENTS, as a delta against
+     *  the already written object BASEID with contents BASE if that is
+     *  less than half the size and the delta chain is not too long. */
+    private void add(ObjectId id, byte[] contents, ObjectId baseID,
+                     byte[] base) {
+        if (_offsets.containsKey(id)) {
+            return;
+        }
+        byte kind = Pack.FULL;
+        byte[] data = contents;
+        int depth = 0;
+        if (base != null && _depths.get(baseID) < MAX_DEPTH) {
+            byte[] delta = Delta.create(base, contents);
+            if (delta.length < contents.length / 2) {
+                kind = Pack.DELTA;
+                data = delta;
+                depth = _depths.get(baseID) + 1;
+            }
+        }
+        byte[] compressed = compress(data);
+        ByteBuffer head = ByteBuffer.allocate(17);
+        head.put(kind);
+        if (kind == Pack.DELTA) {
+            head.putLong(_offsets.get(baseID));
+        }
+        head.putInt(data.length).putInt(compressed.length);
+        try {
+            _out.write(head.array(), 0, head.position());
+            _out.write(compressed);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _offsets.put(id, _offset);
+        _depths.put(id, depth);
+        _offset += head.position() + compressed.length;
+    }
+
+    /** Finishes the pack: fills in its header, writes its index, and
+     *  moves both into place, the index last, since a pack is only
+     *  looked at once its index exists. A pack is named after the ids it
+     *  holds, so it replaces any existing pack of the same objects.
+     *  @return  the index of the new pack */
+    File finish() {
+        ObjectId[] ids =
+            _offsets.keySet().toArray(new ObjectId[_offsets.size()]);
+        Arrays.sort(ids);
+        ByteBuffer names = ByteBuffer.allocate(ids.length * Pack.ID_SIZE);
+        for (ObjectId id : ids) {
+            id.write(names);
+        }
+        String name = "pack-" + Utils.hash(names.array());
+        File pack = new File(Pack.DIR, name + ".pack");
+        File index = new File(Pack.DIR, name + ".idx");
+        try {
+            _out.close();
+            try (RandomAccessFile file = new RandomAccessFile(_temp, "rw")) {
+                file.writeInt(Pack.PACK_MAGIC);
+                file.writeInt(Pack.VERSION);
+                file.writeInt(ids.length);
+            }
+            Files.move(_temp.toPath(), pack.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            ByteBuffer buf = ByteBuffer.allocate(Pack.TABLE_SIZE
+                + ids.length * (Pack.ID_SIZE + 8));
+            buf.putInt(Pack.INDEX_MAGIC).putInt(Pack.VERSION)
+                .putInt(ids.length);
+            int k = 0;
+            for (int b = 0; b < 256; b += 1) {
+                while (k < ids.length && ids[k].firstByte() <= b) {
+                    k += 1;
+                }
+                buf.putInt(k);
+            }
+            buf.put(names.array());
+            for (ObjectId id : ids) {
+                buf.putLong(_offsets.get(id));
+            }
+            File temp = File.createTempFile("tmp_", null, Pack.DIR);
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), index.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return index;
+    }
+
+    /** Returns DATA compressed with zlib. */
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buf = new byte[Math.max(64, data.length / 2)];
+        int n = 0;
+        while (!deflater.finished()) {
+            if (n == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            }
+            n += deflater.deflate(buf, n, buf.length - n);
+        }
+        deflater.end();
+        return Arrays.copyOf(buf, n);
+    }
+
+    /** The file the pack is written to until it is finished. */
+    private File _temp;
+
+    /** The stream writing _temp. */
+    private OutputStream _out;
+
+    /** The number of bytes written so far. */
+    private long _offset;
+
+    /** The offset of the entry of each object written. */
+    private HashMap<ObjectId, Long> _offsets = new HashMap<ObjectId, Long>();
+
+    /** The length of the delta chain ending at each object written. */
+    private HashMap<ObjectId, Integer> _depths =
+        new HashMap<ObjectId, Integer>();
+
+}
@@ -0,0 +1,210 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+
+/** An immutable map from strings to values, kept in key order. Adding
+ *  or removing a key returns a new map that shares everything but the
+ *  O(log n) nodes on the path to that key with the old one, so many
+ *  versions of a large map can be kept for little more than one.
+ *
+ *  The map is a treap whose priorities are hashes of the keys, so its
+ *  shape depends only on the set of keys it holds.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+final class PersistentMap<V> implements Iterable<Map.Entry<String, V>> {
+
+    /** One node of the treap, which is also one entry of the map. */
+    private static final class Node<V> implements Map.Entry<String, V> {
+        /** A node holding KEY and VALUE above LEFT and RIGHT. */
+        Node(String key, V value, Node<V> left, Node<V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.priority = priority(key);
+            this.size = 1 + size(left) + size(right);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V ignored) {
+            throw new UnsupportedOperationException();
+        }
+
+        /** The key of this entry. */
+        final String key;
+        /** The value of this entry. */
+        final V value;
+        /** The subtrees of lesser and greater keys. */
+        final Node<V> left, right;
+        /** The heap priority of this node. */
+        final int priority;
+        /** The number of nodes in this subtree. */
+        final int size;
+    }
+
+    /** Returns an empty map.
+     *  @return  the empty map */
+    static <V> PersistentMap<V> empty() {
+        return new PersistentMap<V>(null);
+    }
+
+    /** A map whose nodes are ROOT. */
+    private PersistentMap(Node<V> root) {
+        _root = root;
+    }
+
+    /** Returns the value of KEY, or null if there is none.
+     *  @param  key  a key
+     *  @return      its value */
+    V get(String key) {
+        Node<V> node = _root;
+        while (node != null) {
+            int c = key.compareTo(node.key);
+            if (c == 0) {
+                return node.value;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /** Returns this map with KEY mapped to VALUE.
+     *  @param  key    a key
+     *  @param  value  its new value
+     *  @return        the new map */
+    PersistentMap<V> put(String key, V value) {
+        return new PersistentMap<V>(put(_root, key, value));
+    }
+
+    /** Returns this map without KEY, or this map if it has no KEY.
+     *  @param  key  a key
+     *  @return      the new map */
+    PersistentMap<V> remove(String key) {
+        Node<V> root = remove(_root, key);
+        return root == _root ? this : new PersistentMap<V>(root);
+    }
+
+    /** Returns the number of keys in this map.
+     *  @return  the size */
+    int size() {
+        return size(_root);
+    }
+
+    /** Returns whether this map has no keys.
+     *  @return  whether it is empty */
+    boolean isEmpty() {
+        return _root == null;
+    }
+
+    /** Iterates over the entries of this map in key order. */
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        final ArrayDeque<Node<V>> stack = new ArrayDeque<Node<V>>();
+        for (Node<V> node = _root; node != null; node = node.left) {
+            stack.push(node);
+        }
+        return new Iterator<Map.Entry<String, V>>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<String, V> next() {
+                Node<V> node = stack.pop();
+                for (Node<V> n = node.right; n != null; n = n.left) {
+                    stack.push(n);
+                }
+                return node;
+            }
+        };
+    }
+
+    /** Returns the subtree NODE with KEY mapped to VALUE. */
+    private static <V> Node<V> put(Node<V> node, String key, V value) {
+        if (node == null) {
+            return new Node<V>(key, value, null, null);
+        }
+        int c = key.compareTo(node.key);
+        if (c == 0) {
+            return new Node<V>(key, value, node.left, node.right);
+        } else if (c < 0) {
+            Node<V> left = put(node.left, key, value);
+            if (left.priority > node.priority) {
+                return new Node<V>(left.key, left.value, left.left,
+                    new Node<V>(node.key, node.value, left.right,
+                                node.right));
+            }
+            return new Node<V>(node.key, node.value, left, node.right);
+        } else {
+            Node<V> right = put(node.right, key, value);
+            if (right.priority > node.priority) {
+                return new Node<V>(right.key, right.value,
+                    new Node<V>(node.key, node.value, node.left,
+                                right.left), right.right);
+            }
+            return new Node<V>(node.key, node.value, node.left, right);
+        }
+    }
+
+    /** Returns the subtree NODE without KEY, or NODE itself if it does
+     *  not hold KEY. */
+    private static <V> Node<V> remove(Node<V> node, String key) {
+        if (node == null) {
+            return null;
+        }
+        int c = key.compareTo(node.key);
+        if (c == 0) {
+            return join(node.left, node.right);
+        } else if (c < 0) {
+            Node<V> left = remove(node.left, key);
+            return left == node.left ? node
+                : new Node<V>(node.key, node.value, left, node.right);
+        } else {
+            Node<V> right = remove(node.right, key);
+            return right == node.right ? node
+                : new Node<V>(node.key, node.value, node.left, right);
+        }
+    }
+
+    /** Returns the union of the subtrees A and B, where every key of A
+     *  is less than every key of B. */
+    private static <V> Node<V> join(Node<V> a, Node<V> b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        } else if (a.priority > b.priority) {
+            return new Node<V>(a.key, a.value, a.left, join(a.right, b));
+        } else {
+            return new Node<V>(b.key, b.value, join(a, b.left), b.right);
+        }
+    }
+
+    /** Returns the number of nodes in the subtree NODE. */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /** Returns the heap priority of KEY, a well-mixed hash of it. */
+    private static int priority(String key) {
+        int h = key.hashCode() * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /** The root of the treap, or null if the map is empty. */
+    private final Node<V> _root;
+
+}
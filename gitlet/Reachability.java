@@ -0,0 +1,319 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Which objects can be reached from which commits, as bitmaps over the
+ *  positions of objects in a pack. Bit I of a set stands for the I-th
+ *  id of the pack in sorted order; objects outside the pack, such as
+ *  loose objects written since the last repack, are given the positions
+ *  after the last one of the pack as they are met.
+ *
+ *  When a pack is written, the set of objects reachable from some of its
+ *  commits is stored with it: every INTERVAL-th commit of the commit
+ *  graph, counting back from the newest. A walk from any commit then
+ *  stops at the first commit that has a stored set and takes the whole
+ *  set at once, so it reads only the commits and directories made since
+ *  then, and "the objects reachable from A but not from B" is a
+ *  difference of two sets rather than a walk of two histories.
+ *
+ *  The sets of pack-X.pack are kept in pack-X.bitmap: an 8-byte header,
+ *  the number of commits as a 4-byte integer, and for each commit its
+ *  20-byte id followed by its set in the form written by Bitmap. Then
+ *  come the number of objects outside the pack that the sets hold, such
+ *  as files too large to be packed, and their ids in the order of their
+ *  positions, which are given to them before any others.
+ *
+ *  Several threads may compute sets at once over the same Reachability,
+ *  as gc does for the heads of the branches.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Reachability {
+
+    /** The first four bytes of a bitmap file. */
+    private static final int MAGIC = 0x424d4150;
+
+    /** The version of the file format. */
+    private static final int VERSION = 2;
+
+    /** The number of commits of the commit graph per stored set. */
+    private static final int INTERVAL = 32;
+
+    /** Reachability over the packs of the repository in the current
+     *  directory, using the stored sets of the pack that has them, if
+     *  any. */
+    Reachability() {
+        for (Pack pack : ObjectStore.packs()) {
+            if (pack.bitmapFile().isFile()) {
+                _pack = pack;
+                break;
+            }
+        }
+        if (_pack == null && !ObjectStore.packs().isEmpty()) {
+            _pack = ObjectStore.packs().get(0);
+        }
+        _base = _pack == null ? 0 : _pack.size();
+        if (_pack != null && _pack.bitmapFile().isFile()) {
+            load(_pack.bitmapFile());
+        }
+    }
+
+    /** Reachability over PACK, with no stored sets. */
+    private Reachability(Pack pack) {
+        _pack = pack;
+        _base = pack.size();
+    }
+
+    /** Stores the sets of objects reachable from every INTERVAL-th
+     *  commit of the commit graph with PACK, which must hold every
+     *  object those commits reach except those too large to be packed,
+     *  as a pack written by repack does. Each set is built on the last
+     *  one stored before it.
+     *  @param  pack  a newly written pack */
+    static void write(Pack pack) {
+        Reachability reach = new Reachability(pack);
+        CommitGraph graph = CommitGraph.get();
+        ArrayList<ObjectId> selected = new ArrayList<ObjectId>();
+        for (int pos = (graph.size() - 1) % INTERVAL; pos >= 0
+                 && pos < graph.size(); pos += INTERVAL) {
+            ObjectId id = graph.id(pos);
+            if (pack.position(id) >= 0) {
+                reach._computed.put(id, reach.reachable(id));
+                selected.add(id);
+            }
+        }
+
+        ArrayList<byte[]> sets = new ArrayList<byte[]>();
+        int length = 16 + reach._extraIDs.size() * ObjectId.SIZE;
+        for (ObjectId id : selected) {
+            byte[] set = reach._computed.get(id).toBytes();
+            sets.add(set);
+            length += ObjectId.SIZE + set.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(selected.size());
+        for (int i = 0; i < selected.size(); i += 1) {
+            selected.get(i).write(buf);
+            buf.put(sets.get(i));
+        }
+        buf.putInt(reach._extraIDs.size());
+        for (ObjectId id : reach._extraIDs) {
+            id.write(buf);
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, Pack.DIR);
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), pack.bitmapFile().toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the set of objects reachable from the commit COMMIT: the
+     *  commit, its ancestors, and the directories and blobs of all of
+     *  their manifests.
+     *  @param  commit  a commit id
+     *  @return         the positions of the reachable objects */
+    Bitmap reachable(ObjectId commit) {
+        Bitmap result = new Bitmap();
+        mark(commit, result);
+        return result;
+    }
+
+    /** Returns the set of objects reachable from any of COMMITS. The
+     *  walk from each commit stops at the commits the walks before it
+     *  have reached.
+     *  @param  commits  commit ids
+     *  @return          the positions of the reachable objects */
+    Bitmap reachable(Iterable<ObjectId> commits) {
+        Bitmap result = new Bitmap();
+        for (ObjectId id : commits) {
+            mark(id, result);
+        }
+        return result;
+    }
+
+    /** Returns the set of objects beneath the manifest whose root
+     *  directory is ID, such as a branch's staged files.
+     *  @param  id  the SHA ID of a manifest
+     *  @return     the positions of its directories and blobs */
+    Bitmap tree(ObjectId id) {
+        Bitmap result = new Bitmap();
+        mark(new Directory("", id), result);
+        return result;
+    }
+
+    /** Returns the position of the object ID, giving it the next
+     *  position after the pack if it is not in the pack.
+     *  @param  id  an object id
+     *  @return     its position */
+    int position(ObjectId id) {
+        int pos = _pack == null ? -1 : _pack.position(id);
+        if (pos >= 0) {
+            return pos;
+        }
+        synchronized (_extra) {
+            Integer extra = _extra.get(id);
+            if (extra == null) {
+                extra = _base + _extraIDs.size();
+                _extra.put(id, extra);
+                _extraIDs.add(id);
+            }
+            return extra;
+        }
+    }
+
+    /** Returns the id of the object at position POS.
+     *  @param  pos  a position returned by position() or in a set
+     *  @return      the object id */
+    ObjectId id(int pos) {
+        if (pos < _base) {
+            return _pack.id(pos);
+        }
+        synchronized (_extra) {
+            return _extraIDs.get(pos - _base);
+        }
+    }
+
+    /** Returns the ids of the members of SET.
+     *  @param  set  a set of positions
+     *  @return      their ids */
+    ArrayList<ObjectId> ids(Bitmap set) {
+        ArrayList<ObjectId> ids = new ArrayList<ObjectId>();
+        for (int pos = set.nextSetBit(0); pos >= 0;
+             pos = set.nextSetBit(pos + 1)) {
+            ids.add(id(pos));
+        }
+        return ids;
+    }
+
+    /** Adds the objects reachable from the commit COMMIT to SET. A
+     *  commit already in SET is passed over, since whatever it reaches is
+     *  in SET too. */
+    private void mark(ObjectId commit, Bitmap set) {
+        ArrayDeque<ObjectId> stack = new ArrayDeque<ObjectId>();
+        stack.push(commit);
+        while (!stack.isEmpty()) {
+            ObjectId id = stack.pop();
+            int pos = position(id);
+            if (set.get(pos)) {
+                continue;
+            }
+            Bitmap stored = stored(id);
+            if (stored != null) {
+                set.or(stored);
+                continue;
+            }
+            set.set(pos);
+            Commit c = Commit.read(id);
+            mark(new Directory("", c.getManifestID()), set);
+            if (c.getMergeParentID() != null) {
+                stack.push(c.getMergeParentID());
+            }
+            if (c.getParentID() != null) {
+                stack.push(c.getParentID());
+            }
+        }
+    }
+
+    /** Adds DIR and everything beneath it to SET. A directory already in
+     *  SET is passed over, since whatever is beneath it is in SET too. */
+    private void mark(Directory dir, Bitmap set) {
+        int pos = position(dir.id());
+        if (set.get(pos)) {
+            return;
+        }
+        set.set(pos);
+        for (Map.Entry<String, Object> e : dir.entries()) {
+            Object child = e.getValue();
+            if (child instanceof Directory) {
+                mark((Directory) child, set);
+            } else {
+                set.set(position(((Blob) child).getSHA()));
+            }
+        }
+    }
+
+    /** Returns the stored set of the commit ID, or null if it has none.
+     *  The result must not be changed. */
+    private synchronized Bitmap stored(ObjectId id) {
+        Bitmap set = _computed.get(id);
+        if (set == null && _offsets.containsKey(id)) {
+            ByteBuffer buf = _sets.duplicate();
+            buf.position(_offsets.get(id));
+            set = Bitmap.read(buf);
+            _computed.put(id, set);
+        }
+        return set;
+    }
+
+    /** Reads the commit ids of the bitmap file FILE, and where each of
+     *  their sets starts, and gives the objects outside the pack that
+     *  the sets hold their positions. The sets are decoded as they are
+     *  needed. A file of the first version has no such objects. */
+    private void load(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                 StandardOpenOption.READ)) {
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = buf.getInt(4);
+            if (buf.getInt() != MAGIC || buf.getInt() > VERSION) {
+                throw new IllegalArgumentException("bad bitmap file");
+            }
+            int count = buf.getInt();
+            for (int i = 0; i < count; i += 1) {
+                ObjectId id = ObjectId.read(buf);
+                _offsets.put(id, buf.position());
+                buf.getInt();
+                int stored = buf.getInt();
+                buf.position(buf.position() + 8 * stored);
+            }
+            _sets = buf;
+            int extra = version == 1 ? 0 : buf.getInt();
+            for (int i = 0; i < extra; i += 1) {
+                ObjectId id = ObjectId.read(buf);
+                _extra.put(id, _base + i);
+                _extraIDs.add(id);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The pack whose positions the sets use, or null if there are no
+     *  packs. */
+    private Pack _pack;
+
+    /** The number of objects in _pack. */
+    private final int _base;
+
+    /** The contents of the bitmap file. */
+    private ByteBuffer _sets;
+
+    /** Where the stored set of each commit starts in _sets. */
+    private HashMap<ObjectId, Integer> _offsets =
+        new HashMap<ObjectId, Integer>();
+
+    /** The sets read from _sets or computed, by commit. */
+    private HashMap<ObjectId, Bitmap> _computed =
+        new HashMap<ObjectId, Bitmap>();
+
+    /** The positions given to objects outside the pack. */
+    private HashMap<ObjectId, Integer> _extra =
+        new HashMap<ObjectId, Integer>();
+
+    /** The objects outside the pack, in the order of their positions. */
+    private ArrayList<ObjectId> _extraIDs = new ArrayList<ObjectId>();
+
+}
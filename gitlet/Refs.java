@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** The branches of a repository and which of them is checked out: for
+ *  each branch, its name, the id of its head commit and the id of the
+ *  manifest staged for its next commit.
+ *
+ *  The refs are kept in .gitlet/refs: an 8-byte header, the number of
+ *  branches and the index of the current branch as 4-byte integers, and
+ *  one entry per branch holding the 20-byte head id, the 20-byte staged
+ *  manifest id, the length of the name as a 2-byte integer and the name
+ *  in UTF-8. The file is small and is replaced as a whole by renaming,
+ *  so a reader always sees one consistent set of refs. A command that
+ *  replaces it holds .gitlet/refs.lock from reading it to renaming the
+ *  new file into place, so that it cannot overwrite refs another
+ *  command has written meanwhile without seeing them.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Refs {
+
+    /** The file holding the refs. */
+    static final File FILE = new File(".gitlet", "refs");
+
+    /** The first four bytes of the file. */
+    private static final int MAGIC = 0x52454653;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** The file that exists while a command holds the lock on the refs. */
+    static final File LOCK = new File(".gitlet", "refs.lock");
+
+    /** How long to wait for the lock before giving up, in milliseconds. */
+    private static final long LOCK_TIMEOUT = 5000;
+
+    /** One branch. */
+    static class Ref {
+        /** The branch NAME, whose head is the commit HEAD and whose
+         *  staged files are the manifest STAGED. */
+        Ref(String name, ObjectId head, ObjectId staged) {
+            this.name = name;
+            this.head = head;
+            this.staged = staged;
+        }
+
+        /** The name of the branch. */
+        final String name;
+        /** The SHA ID of its head commit. */
+        final ObjectId head;
+        /** The SHA ID of the manifest staged for its next commit. */
+        final ObjectId staged;
+    }
+
+    /** An empty set of refs. */
+    Refs() {
+    }
+
+    /** Returns the refs of the repository in the current directory.
+     *  @return  the refs */
+    static Refs read() {
+        Refs refs = new Refs();
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                 StandardOpenOption.READ)) {
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IllegalArgumentException("bad refs file");
+            }
+            int count = buf.getInt();
+            refs._current = buf.getInt();
+            for (int i = 0; i < count; i += 1) {
+                ObjectId head = ObjectId.read(buf);
+                ObjectId staged = ObjectId.read(buf);
+                byte[] name = new byte[buf.getShort()];
+                buf.get(name);
+                refs._refs.add(new Ref(new String(name, UTF_8), head, staged));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return refs;
+    }
+
+    /** Takes the lock on the refs, waiting for another command to
+     *  release it if need be. Throws IllegalArgumentException if it is
+     *  not released within LOCK_TIMEOUT, which may mean a command holding
+     *  it was killed and the lock file must be removed by hand. */
+    static void lock() {
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT;
+        while (true) {
+            try {
+                Files.createFile(LOCK.toPath());
+                return;
+            } catch (FileAlreadyExistsException excp) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalArgumentException(
+                        "The refs are locked by another command.");
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Releases the lock on the refs. */
+    static void unlock() {
+        LOCK.delete();
+    }
+
+    /** Returns these refs, which were made from the refs BASE, together
+     *  with the changes another command has made since BASE was read,
+     *  which DISK, the refs now in the file, holds. A branch changed there
+     *  and not here takes its new head and staged files, one added there
+     *  is added, and one removed there and not changed here is removed,
+     *  unless it is the current branch. A branch changed in both keeps
+     *  the change made here.
+     *  @param  base  the refs these were made from
+     *  @param  disk  the refs in the file
+     *  @return       the merged refs */
+    Refs merge(Refs base, Refs disk) {
+        Refs merged = new Refs();
+        String current = _refs.get(_current).name;
+        for (Ref ref : _refs) {
+            Ref before = base.find(ref.name), after = disk.find(ref.name);
+            if (before == null || !same(ref, before)) {
+                merged._refs.add(ref);
+            } else if (after != null) {
+                merged._refs.add(after);
+            } else if (ref.name.equals(current)) {
+                merged._refs.add(ref);
+            }
+        }
+        for (Ref ref : disk._refs) {
+            if (find(ref.name) == null && base.find(ref.name) == null) {
+                merged._refs.add(ref);
+            }
+        }
+        for (int i = 0; i < merged._refs.size(); i += 1) {
+            if (merged._refs.get(i).name.equals(current)) {
+                merged._current = i;
+            }
+        }
+        return merged;
+    }
+
+    /** Returns the branch named NAME, or null if there is none. */
+    private Ref find(String name) {
+        for (Ref ref : _refs) {
+            if (ref.name.equals(name)) {
+                return ref;
+            }
+        }
+        return null;
+    }
+
+    /** Returns whether A and B have the same head and staged files. */
+    private static boolean same(Ref a, Ref b) {
+        return a.head.equals(b.head) && a.staged.equals(b.staged);
+    }
+
+    /** Adds the branch NAME, whose head is the commit HEAD and whose
+     *  staged files are the manifest STAGED.
+     *  @param  name    the name of the branch
+     *  @param  head    the SHA ID of its head commit
+     *  @param  staged  the SHA ID of its staged manifest */
+    void add(String name, ObjectId head, ObjectId staged) {
+        _refs.add(new Ref(name, head, staged));
+    }
+
+    /** Returns the branches, in the order they were added.
+     *  @return  the refs */
+    ArrayList<Ref> refs() {
+        return _refs;
+    }
+
+    /** Returns the index of the current branch.
+     *  @return  the index into refs() of the branch checked out */
+    int current() {
+        return _current;
+    }
+
+    /** Makes the branch at INDEX the current branch.
+     *  @param  index  an index into refs() */
+    void setCurrent(int index) {
+        _current = index;
+    }
+
+    /** Replaces the refs file with these refs. */
+    void write() {
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, toBytes());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Refs
+            && Arrays.equals(toBytes(), ((Refs) obj).toBytes());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toBytes());
+    }
+
+    /** Returns the stored form of these refs. */
+    private byte[] toBytes() {
+        int length = 16;
+        for (Ref ref : _refs) {
+            length += 2 * ObjectId.SIZE + 2 + ref.name.getBytes(UTF_8).length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(_refs.size()).putInt(_current);
+        for (Ref ref : _refs) {
+            byte[] name = ref.name.getBytes(UTF_8);
+            ref.head.write(buf);
+            ref.staged.write(buf);
+            buf.putShort((short) name.length).put(name);
+        }
+        return buf.array();
+    }
+
+    /** The branches. */
+    private ArrayList<Ref> _refs = new ArrayList<Ref>();
+
+    /** The index of the current branch. */
+    private int _current;
+
+}
@@ -0,0 +1,468 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Another repository on this machine, and the exchange of commits
+ *  with it. Every store of a repository is found relative to its working
+ *  directory, so the other side of an exchange runs as a second gitlet
+ *  process in the remote's working directory: "upload-pack" to serve a
+ *  fetch and "receive-pack" to take a push. The two talk over the
+ *  child's standard input and output.
+ *
+ *  Either way, the serving side first lists its branches and their
+ *  heads. For a fetch, the client then asks for the head it wants and
+ *  offers its own commits, newest first and a round at a time; the
+ *  server answers which of them it has, and the client stops offering
+ *  the ancestors of those, since they must be common too. For a push,
+ *  the heads the server listed are enough: those the client has are
+ *  common. The sender then sends, as a single pack streamed as it is
+ *  made, the objects reachable from the wanted head but not from any
+ *  common commit, which the reachability bitmaps of the sender give as
+ *  one difference of sets. Syncing a mirror after one commit moves that
+ *  commit and the few directories and files it changed.
+ *
+ *  The receiver of a push first answers whether its branches allow it.
+ *  It checks the pack as it stores it, adds the new commits to its
+ *  commit graph and indexes, parents first, and only then moves a
+ *  branch to the new head.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Remote {
+
+    /** The command that serves a fetch from a repository. */
+    static final String UPLOAD = "upload-pack";
+
+    /** The command that takes a push into a repository. */
+    static final String RECEIVE = "receive-pack";
+
+    /** The number of commits offered in one round of a fetch. */
+    private static final int ROUND = 16;
+
+    /** The largest number of commits offered in all. If no common commit
+     *  has turned up by then, the histories have little in common and
+     *  the remote sends everything the wanted head reaches. */
+    private static final int MAX_HAVES = 256;
+
+    /** The repository whose .gitlet directory is DIR. */
+    Remote(File dir) {
+        _dir = dir;
+    }
+
+    /** Fetches the branch BRANCH of the remote: receives the objects of
+     *  its history that are missing here and adds its commits to the
+     *  commit graph. HEADS are the heads of the branches here, from
+     *  which the commits offered to the remote are taken. Returns the
+     *  head of BRANCH, or null if the remote has no such branch.
+     *  @param  branch  the name of a branch of the remote
+     *  @param  heads   the ids of the heads of the local branches
+     *  @return         the id of the head of BRANCH, or null */
+    ObjectId fetch(String branch, List<ObjectId> heads) {
+        Process process = start(UPLOAD);
+        try (DataInputStream in = input(process);
+             DataOutputStream out = output(process)) {
+            ObjectId want = readRefs(in).get(branch);
+            if (want == null || CommitGraph.get().contains(want)) {
+                out.writeInt(0);
+                out.flush();
+                return want;
+            }
+            out.writeInt(1);
+            writeId(out, want);
+            offer(heads, in, out);
+            PackWriter.receive(in);
+            ObjectStore.reloadPacks();
+            index(want);
+            return want;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(NO_RESPONSE);
+        } finally {
+            finish(process);
+        }
+    }
+
+    /** Makes the commit HEAD the head of the branch BRANCH of the remote,
+     *  sending the objects of its history that the remote is missing.
+     *  The branch must not have moved past HEAD's history. Returns an
+     *  error message, or null if the push succeeded.
+     *  @param  branch  the name of a branch of the remote
+     *  @param  head    the id of a local commit
+     *  @return         the reason the push failed, or null */
+    String push(String branch, ObjectId head) {
+        Process process = start(RECEIVE);
+        try (DataInputStream in = input(process);
+             DataOutputStream out = output(process)) {
+            HashMap<String, ObjectId> refs = readRefs(in);
+            ObjectId old = refs.get(branch);
+            CommitGraph graph = CommitGraph.get();
+            if (old != null && !graph.isAncestor(old, head)) {
+                out.writeBoolean(false);
+                out.flush();
+                return PULL_FIRST;
+            } else if (head.equals(old)) {
+                out.writeBoolean(false);
+                out.flush();
+                return null;
+            }
+            out.writeBoolean(true);
+            out.writeUTF(branch);
+            out.writeBoolean(old != null);
+            if (old != null) {
+                writeId(out, old);
+            }
+            writeId(out, head);
+            out.flush();
+            String refused = in.readUTF();
+            if (!refused.isEmpty()) {
+                return refused;
+            }
+
+            ArrayList<ObjectId> common = new ArrayList<ObjectId>();
+            for (ObjectId id : refs.values()) {
+                if (graph.contains(id)) {
+                    common.add(id);
+                }
+            }
+            Reachability reach = new Reachability();
+            Bitmap missing = reach.reachable(head)
+                .andNot(reach.reachable(common));
+            PackWriter.send(new HashSet<ObjectId>(reach.ids(missing)), out);
+            out.flush();
+            String error = in.readUTF();
+            return error.isEmpty() ? null : error;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(NO_RESPONSE);
+        } finally {
+            finish(process);
+        }
+    }
+
+    /** Serves a fetch from the repository in the current directory on
+     *  the standard input and output. */
+    static void upload() {
+        try (DataInputStream in = serverInput();
+             DataOutputStream out = serverOutput()) {
+            writeRefs(out);
+            ArrayList<ObjectId> wants = new ArrayList<ObjectId>();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                wants.add(readId(in));
+            }
+            if (wants.isEmpty()) {
+                return;
+            }
+            CommitGraph graph = CommitGraph.get();
+            ArrayList<ObjectId> common = new ArrayList<ObjectId>();
+            for (int n = in.readInt(); n > 0; n = in.readInt()) {
+                for (int i = 0; i < n; i += 1) {
+                    ObjectId id = readId(in);
+                    boolean has = graph.contains(id);
+                    if (has) {
+                        common.add(id);
+                    }
+                    out.writeBoolean(has);
+                }
+                out.flush();
+            }
+            Reachability reach = new Reachability();
+            Bitmap missing = reach.reachable(wants)
+                .andNot(reach.reachable(common));
+            PackWriter.send(new HashSet<ObjectId>(reach.ids(missing)), out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Takes a push into the repository in the current directory on the
+     *  standard input and output. A push the branches here refuse is
+     *  answered before the pack is sent, so that nothing of it is
+     *  stored. */
+    static void receive() {
+        try (DataInputStream in = serverInput();
+             DataOutputStream out = serverOutput()) {
+            writeRefs(out);
+            if (!in.readBoolean()) {
+                return;
+            }
+            String branch = in.readUTF();
+            ObjectId old = in.readBoolean() ? readId(in) : null;
+            ObjectId head = readId(in);
+            String error = check(branch, old);
+            out.writeUTF(error == null ? "" : error);
+            out.flush();
+            if (error != null) {
+                return;
+            }
+            PackWriter.receive(in);
+            ObjectStore.reloadPacks();
+            index(head);
+            error = update(branch, old, head);
+            out.writeUTF(error == null ? "" : error);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns why the branch BRANCH of the repository in the current
+     *  directory may not be moved from the commit OLD, or from nowhere if
+     *  OLD is null, or null if it may. No branch is moved while a daemon
+     *  serves the repository, since it keeps the branches loaded.
+     *  @param  branch  the name of a branch
+     *  @param  old     the head the pusher saw, or null
+     *  @return         the reason the push is refused, or null */
+    private static String check(String branch, ObjectId old) {
+        if (Daemon.SOCKET.exists()) {
+            return "The remote repository is being served by a daemon.";
+        }
+        return check(Refs.read(), branch, old);
+    }
+
+    /** Returns why the branch BRANCH of REFS may not be moved from OLD,
+     *  or null if it may. The branch checked out is never moved, since
+     *  its working files would no longer match it. */
+    private static String check(Refs refs, String branch, ObjectId old) {
+        for (Refs.Ref ref : refs.refs()) {
+            if (!ref.name.equals(branch)) {
+                continue;
+            } else if (ref == refs.refs().get(refs.current())) {
+                return "The remote branch is checked out there.";
+            } else if (!ref.head.equals(old)) {
+                return PULL_FIRST;
+            } else if (!ref.staged.equals(
+                           Commit.read(ref.head).getManifestID())) {
+                return "The remote branch has staged changes.";
+            }
+            return null;
+        }
+        return old == null ? null : PULL_FIRST;
+    }
+
+    /** Moves the branch BRANCH of the repository in the current directory
+     *  from the commit OLD, or from nowhere if OLD is null, to the commit
+     *  HEAD, whose files become its staged files. Returns an error
+     *  message, or null if the branch was moved. The refs are locked
+     *  from reading them to writing them, and checked again, since they
+     *  may have changed while the pack was received. */
+    private static String update(String branch, ObjectId old,
+                                 ObjectId head) {
+        if (Daemon.SOCKET.exists()) {
+            return "The remote repository is being served by a daemon.";
+        }
+        Refs.lock();
+        try {
+            Refs refs = Refs.read();
+            String error = check(refs, branch, old);
+            if (error == null) {
+                update(refs, branch, head);
+            }
+            return error;
+        } finally {
+            Refs.unlock();
+        }
+    }
+
+    /** Writes REFS to the refs file with the branch BRANCH moved to, or
+     *  added at, the commit HEAD. */
+    private static void update(Refs refs, String branch, ObjectId head) {
+        Refs updated = new Refs();
+        boolean found = false;
+        for (Refs.Ref ref : refs.refs()) {
+            if (ref.name.equals(branch)) {
+                found = true;
+                updated.add(branch, head, Commit.read(head).getManifestID());
+            } else {
+                updated.add(ref.name, ref.head, ref.staged);
+            }
+        }
+        if (!found) {
+            updated.add(branch, head, Commit.read(head).getManifestID());
+        }
+        updated.setCurrent(refs.current());
+        updated.write();
+    }
+
+    /** Offers the commits reachable from HEADS to the remote a round at
+     *  a time, newest first by their positions in the commit graph,
+     *  reading its answers from IN. The parents of a commit the remote
+     *  has are not offered. */
+    private static void offer(List<ObjectId> heads, DataInputStream in,
+                              DataOutputStream out) throws IOException {
+        CommitGraph graph = CommitGraph.get();
+        PriorityQueue<Integer> queue =
+            new PriorityQueue<Integer>(Collections.reverseOrder());
+        HashSet<Integer> queued = new HashSet<Integer>();
+        for (ObjectId id : heads) {
+            int pos = graph.position(id);
+            if (pos != CommitGraph.NONE && queued.add(pos)) {
+                queue.add(pos);
+            }
+        }
+        for (int sent = 0; !queue.isEmpty() && sent < MAX_HAVES; ) {
+            ArrayList<Integer> round = new ArrayList<Integer>();
+            while (!queue.isEmpty() && round.size() < ROUND) {
+                round.add(queue.poll());
+            }
+            out.writeInt(round.size());
+            for (int pos : round) {
+                writeId(out, graph.id(pos));
+            }
+            out.flush();
+            for (int pos : round) {
+                if (in.readBoolean()) {
+                    continue;
+                }
+                for (int k = 0; k <= 1; k += 1) {
+                    int parent = graph.parent(pos, k);
+                    if (parent != CommitGraph.NONE && queued.add(parent)) {
+                        queue.add(parent);
+                    }
+                }
+            }
+            sent += round.size();
+        }
+        out.writeInt(0);
+        out.flush();
+    }
+
+    /** Adds the commits that HEAD reaches and the commit graph does not
+     *  hold yet to the graph and the indexes, each after its parents. */
+    private static void index(ObjectId head) {
+        CommitGraph graph = CommitGraph.get();
+        HashSet<ObjectId> visited = new HashSet<ObjectId>();
+        ArrayDeque<ObjectId> stack = new ArrayDeque<ObjectId>();
+        stack.push(head);
+        while (!stack.isEmpty()) {
+            ObjectId id = stack.peek();
+            if (graph.contains(id)) {
+                stack.pop();
+                continue;
+            }
+            Commit commit = Commit.read(id);
+            if (visited.add(id)) {
+                for (ObjectId parent : new ObjectId[] {
+                        commit.getMergeParentID(), commit.getParentID() }) {
+                    if (parent != null && !graph.contains(parent)
+                        && !visited.contains(parent)) {
+                        stack.push(parent);
+                    }
+                }
+            } else {
+                stack.pop();
+                commit.index();
+            }
+        }
+    }
+
+    /** Starts COMMAND in the working directory of the remote. The child
+     *  runs on the same Java and class path as this process, and its
+     *  error output goes to ours. */
+    private Process start(String command) {
+        File java = new File(new File(System.getProperty("java.home"),
+                                      "bin"), "java");
+        ProcessBuilder builder =
+            new ProcessBuilder(java.getPath(), "-cp",
+                               System.getProperty("java.class.path"),
+                               Main.class.getName(), command);
+        File work = _dir.getAbsoluteFile().getParentFile();
+        builder.directory(work);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            return builder.start();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Waits for PROCESS to exit. */
+    private static void finish(Process process) {
+        try {
+            process.waitFor();
+        } catch (InterruptedException excp) {
+            process.destroy();
+        }
+    }
+
+    /** Returns a stream reading the output of PROCESS. */
+    private static DataInputStream input(Process process) {
+        return new DataInputStream(
+            new BufferedInputStream(process.getInputStream()));
+    }
+
+    /** Returns a stream writing the input of PROCESS. */
+    private static DataOutputStream output(Process process) {
+        return new DataOutputStream(
+            new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    /** Returns a stream reading the standard input. */
+    private static DataInputStream serverInput() {
+        return new DataInputStream(new BufferedInputStream(System.in));
+    }
+
+    /** Returns a stream writing the standard output, as bytes. */
+    private static DataOutputStream serverOutput() {
+        return new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out)));
+    }
+
+    /** Writes the branches of the repository in the current directory
+     *  and their heads to OUT. */
+    private static void writeRefs(DataOutputStream out) throws IOException {
+        Refs refs = Refs.read();
+        out.writeInt(refs.refs().size());
+        for (Refs.Ref ref : refs.refs()) {
+            out.writeUTF(ref.name);
+            writeId(out, ref.head);
+        }
+        out.flush();
+    }
+
+    /** Reads the branches written by writeRefs from IN, and returns the
+     *  head of each by name. */
+    private static HashMap<String, ObjectId> readRefs(DataInputStream in)
+        throws IOException {
+        HashMap<String, ObjectId> refs = new HashMap<String, ObjectId>();
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = in.readUTF();
+            refs.put(name, readId(in));
+        }
+        return refs;
+    }
+
+    /** Writes ID to OUT as its 20 bytes. */
+    private static void writeId(DataOutputStream out, ObjectId id)
+        throws IOException {
+        out.write(id.toBytes());
+    }
+
+    /** Reads an id written by writeId from IN. */
+    private static ObjectId readId(DataInputStream in) throws IOException {
+        byte[] raw = new byte[ObjectId.SIZE];
+        in.readFully(raw);
+        return ObjectId.fromBytes(raw, 0);
+    }
+
+    /** The error reported when the branch to push to has moved on. */
+    private static final String PULL_FIRST =
+        "Please pull down remote changes before pushing.";
+
+    /** The error reported when the remote process stops answering. */
+    private static final String NO_RESPONSE =
+        "The remote repository did not respond.";
+
+    /** The .gitlet directory of the remote. */
+    private final File _dir;
+
+}
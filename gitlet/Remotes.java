@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** The remotes of a repository: other repositories on this machine,
+ *  each known by a name and the path of its .gitlet directory.
+ *
+ *  The remotes are kept in .gitlet/remotes: an 8-byte header, the number
+ *  of remotes as a 4-byte integer, and for each remote the length of its
+ *  name as a 2-byte integer, the name in UTF-8, and the same for its
+ *  path. Like the refs file, it is replaced as a whole by renaming.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class Remotes {
+
+    /** The file holding the remotes. */
+    static final File FILE = new File(".gitlet", "remotes");
+
+    /** The first four bytes of the file. */
+    private static final int MAGIC = 0x524d5453;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** Returns the remotes of the repository in the current directory,
+     *  which are none if it has no remotes file.
+     *  @return  the remotes */
+    static Remotes read() {
+        Remotes remotes = new Remotes();
+        if (!FILE.isFile()) {
+            return remotes;
+        }
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                 StandardOpenOption.READ)) {
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IllegalArgumentException("bad remotes file");
+            }
+            int count = buf.getInt();
+            for (int i = 0; i < count; i += 1) {
+                String name = readString(buf);
+                remotes._paths.put(name, readString(buf));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return remotes;
+    }
+
+    /** Returns the .gitlet directory of the remote NAME, or null if there
+     *  is no such remote.
+     *  @param  name  the name of a remote
+     *  @return       the directory, which may not exist */
+    File get(String name) {
+        String path = _paths.get(name);
+        return path == null ? null : new File(path);
+    }
+
+    /** Adds the remote NAME, whose .gitlet directory is PATH, with '/'
+     *  separating the names in PATH on any system.
+     *  @param  name  the name of the remote
+     *  @param  path  the path of its .gitlet directory */
+    void add(String name, String path) {
+        _paths.put(name, path.replace("/", File.separator));
+    }
+
+    /** Replaces the remotes file with these remotes. */
+    void write() {
+        int length = 12;
+        for (Map.Entry<String, String> e : _paths.entrySet()) {
+            length += 4 + e.getKey().getBytes(UTF_8).length
+                + e.getValue().getBytes(UTF_8).length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(_paths.size());
+        for (Map.Entry<String, String> e : _paths.entrySet()) {
+            writeString(buf, e.getKey());
+            writeString(buf, e.getValue());
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the string at the position of BUF, and moves past it. */
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getShort()];
+        buf.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /** Writes S to BUF as readString reads it. */
+    private static void writeString(ByteBuffer buf, String s) {
+        byte[] bytes = s.getBytes(UTF_8);
+        buf.putShort((short) bytes.length).put(bytes);
+    }
+
+    /** The path of the .gitlet directory of each remote, by name, in the
+     *  order they were added. */
+    private LinkedHashMap<String, String> _paths =
+        new LinkedHashMap<String, String>();
+
+}
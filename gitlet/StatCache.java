@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Remembers the size, modification time, inode and blob id of each
+ *  working file that has been hashed, so that a file is only hashed
+ *  again once its stat data change.
+ *
+ *  The cache is kept in .gitlet/index: an 8-byte header, the number of
+ *  entries, and one entry per file in path order, holding the length of
+ *  the path as a 2-byte integer, the path in UTF-8, the size, the
+ *  modification time in nanoseconds and the inode as 8-byte integers,
+ *  and the 20-byte blob id.
+ *  @author Divya Chandrasekaran and Ilina Bhaya-Grossman
+ */
+class StatCache {
+
+    /** The file holding the cache. */
+    static final File FILE = new File(".gitlet", "index");
+
+    /** The first four bytes of the file. */
+    private static final int MAGIC = 0x53544154;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** The stat data and blob id of one file. */
+    private static class Stat {
+        /** The size of the file. */
+        long size;
+        /** The modification time of the file, in nanoseconds. */
+        long mtime;
+        /** The inode of the file, or 0 if it is not known. */
+        long inode;
+        /** The SHA ID of the contents of the file. */
+        ObjectId id;
+    }
+
+    /** Returns the stat cache of the repository in the current
+     *  directory, reading it the first time it is needed.
+     *  @return  the stat cache */
+    static StatCache get() {
+        if (_cache == null) {
+            _cache = new StatCache();
+            _cache.load();
+        }
+        return _cache;
+    }
+
+    /** Writes the stat cache back, if it has been read and changed. */
+    static void saveIfChanged() {
+        if (_cache != null && _cache._changed) {
+            _cache.save();
+        }
+    }
+
+    /** Returns the SHA ID of the contents of FILE, which must be a normal
+     *  file. FILE is only read if its stat data differ from those cached.
+     *  Several threads may hash files at once.
+     *  @param  file  a working file
+     *  @return       the SHA ID of its contents */
+    ObjectId hash(File file) {
+        String path = Blob.nameOf(file);
+        Stat current = stat(file);
+        synchronized (this) {
+            Stat cached = _entries.get(path);
+            if (cached != null && cached.size == current.size
+                && cached.mtime == current.mtime
+                && cached.inode == current.inode && cached.mtime < _written) {
+                return cached.id;
+            }
+        }
+        current.id = Utils.hash(file);
+        synchronized (this) {
+            _entries.put(path, current);
+            _changed = true;
+        }
+        return current.id;
+    }
+
+    /** Stores the contents of FILE, which must be a normal file, in the
+     *  object store and returns their SHA ID. If its stat data match
+     *  those cached and the object is stored, FILE is not read; a loose
+     *  object is freshened, and a packed one is left as it is rather than
+     *  copied out of its pack for every unchanged file added. Otherwise
+     *  FILE is read once, and hashed as it is copied into the store.
+     *  Several threads may store files at once.
+     *  @param  file  a working file
+     *  @return       the SHA ID of its contents */
+    ObjectId store(File file) {
+        String path = Blob.nameOf(file);
+        Stat current = stat(file);
+        ObjectId id = null;
+        synchronized (this) {
+            Stat cached = _entries.get(path);
+            if (cached != null && cached.size == current.size
+                && cached.mtime == current.mtime
+                && cached.inode == current.inode && cached.mtime < _written) {
+                id = cached.id;
+            }
+        }
+        if (id != null
+            && (ObjectStore.freshen(id) || ObjectStore.contains(id))) {
+            return id;
+        }
+        current.id = ObjectStore.write(file);
+        synchronized (this) {
+            _entries.put(path, current);
+            _changed = true;
+        }
+        return current.id;
+    }
+
+    /** Records that FILE, which has just been written, holds the
+     *  contents with SHA ID ID, so that it need not be read to be hashed.
+     *  @param  file  a working file
+     *  @param  id    the SHA ID of its contents */
+    void put(File file, ObjectId id) {
+        Stat current = stat(file);
+        current.id = id;
+        synchronized (this) {
+            _entries.put(Blob.nameOf(file), current);
+            _changed = true;
+        }
+    }
+
+    /** Forgets the cached data of the file tracked as PATH.
+     *  @param  path  the tracked name of a working file */
+    synchronized void remove(String path) {
+        if (_entries.remove(path) != null) {
+            _changed = true;
+        }
+    }
+
+    /** Returns the current stat data of FILE, without an id. */
+    private static Stat stat(File file) {
+        Path path = file.toPath();
+        Stat stat = new Stat();
+        try {
+            BasicFileAttributes attrs =
+                Files.readAttributes(path, BasicFileAttributes.class);
+            stat.size = attrs.size();
+            stat.mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            try {
+                stat.inode = ((Number) Files.getAttribute(path, "unix:ino"))
+                    .longValue();
+            } catch (UnsupportedOperationException excp) {
+                stat.inode = 0;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return stat;
+    }
+
+    /** Reads the cache file, if there is one. Entries modified no
+     *  earlier than the file was written may have changed again within
+     *  the same clock tick, so they are never trusted; while there is no
+     *  file, no entry is. */
+    private void load() {
+        if (!FILE.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(FILE.toPath(),
+                 StandardOpenOption.READ)) {
+            _written = stat(FILE).mtime;
+            MappedByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IllegalArgumentException("bad index file");
+            }
+            int count = buf.getInt();
+            for (int i = 0; i < count; i += 1) {
+                byte[] path = new byte[buf.getShort() & 0xffff];
+                buf.get(path);
+                Stat stat = new Stat();
+                stat.size = buf.getLong();
+                stat.mtime = buf.getLong();
+                stat.inode = buf.getLong();
+                stat.id = ObjectId.read(buf);
+                _entries.put(new String(path, UTF_8), stat);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes the cache file, after which the entries modified before it
+     *  was written are trusted. */
+    private synchronized void save() {
+        int length = 12;
+        for (String path : _entries.keySet()) {
+            length += 2 + path.getBytes(UTF_8).length + 24 + 20;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(_entries.size());
+        for (Map.Entry<String, Stat> e : _entries.entrySet()) {
+            byte[] path = e.getKey().getBytes(UTF_8);
+            Stat stat = e.getValue();
+            buf.putShort((short) path.length).put(path);
+            buf.putLong(stat.size).putLong(stat.mtime).putLong(stat.inode);
+            stat.id.write(buf);
+        }
+        try {
+            File temp = File.createTempFile("tmp_", null, FILE.getParentFile());
+            Utils.writeContents(temp, buf.array());
+            Files.move(temp.toPath(), FILE.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _written = stat(FILE).mtime;
+        _changed = false;
+    }
+
+    /** The stat cache of the repository in the current directory. */
+    private static StatCache _cache;
+
+    /** The cached entries, by path. */
+    private TreeMap<String, Stat> _entries = new TreeMap<String, Stat>();
+
+    /** The modification time of the cache file when it was last read or
+     *  written, in nanoseconds, or the least time if there is none. */
+    private long _written = Long.MIN_VALUE;
+
+    /** Whether the entries have changed since they were read. */
+    private boolean _changed;
+
+}
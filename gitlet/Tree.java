@@ -1,22 +1,31 @@
 package gitlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Collection;
+import java.util.Collections;
 
 /**This class represents a tree in git that contains several branches in the .gitlet
- * directory
+ * directory. The branches are kept in the refs file, and only the refs
+ * are read when a command starts; commits and manifests are read as
+ * they are needed
  * @author Divya Chandrasekaran, Ilina Bhaya-Grossman
  */
-public class Tree implements Serializable {
+public class Tree {
     /*A list of all the branches*/
     ArrayList<Branch> branches = new ArrayList<Branch>();
 
     /*Current branch.*/
     Branch current;
+
+    /*The refs as they were last read or written, or null.*/
+    private Refs _saved;
+
+    /*Marker lines written around the two versions of a conflicting file.*/
+    private static final byte[] CONFLICT_HEAD = "<<<<<<< HEAD".getBytes();
+    private static final byte[] CONFLICT_MIDDLE = "=======".getBytes();
+    private static final byte[] CONFLICT_TAIL = ">>>>>>>".getBytes();
     
   
     /**This is the constructor that should be used when instantiated the .gitlet
@@ -24,10 +33,110 @@ public class Tree implements Serializable {
      */
     public Tree(){
         Commit initialCommit = new Commit(null);
+        initialCommit.update();
+        initialCommit.writeToGitlet();
         Branch master = new Branch(initialCommit, "master");
         current = master;
         branches.add(current);
     }
+
+    /**A tree whose branches are the stored REFS.
+     * @param refs The refs read from the refs file
+     */
+    private Tree(Refs refs) {
+        setRefs(refs);
+    }
+
+    /**Makes the branches of this tree those of the stored REFS.
+     * @param refs The refs read from or written to the refs file
+     */
+    private void setRefs(Refs refs) {
+        branches = new ArrayList<Branch>();
+        for (Refs.Ref ref: refs.refs()) {
+            branches.add(new Branch(ref));
+        }
+        current = branches.get(refs.current());
+        _saved = refs;
+    }
+
+    /**Returns the tree of the repository in the current directory,
+     * read from its refs file.
+     * @return The tree
+     */
+    static Tree load() {
+        return new Tree(Refs.read());
+    }
+
+    /**Returns the refs of the branches as they are now. The staged
+     * manifest of each branch is stored first, so that it can be read
+     * back by its id.
+     * @return The refs
+     */
+    Refs snapshot() {
+        Refs refs = new Refs();
+        for (Branch b: branches) {
+            Manifest staged = b.workingCommit.getBlobs();
+            staged.write();
+            refs.add(b.name, b.head.getSHA(), staged.id());
+        }
+        refs.setCurrent(branches.indexOf(current));
+        return refs;
+    }
+
+    /**Writes the branches back to the refs file, if they have changed
+     * since they were read.
+     */
+    void save() {
+        save(snapshot());
+    }
+
+    /**Writes REFS, taken from this tree by snapshot, to the refs file, if
+     * they have changed since the refs were read. The refs are locked
+     * while they are compared and replaced, and changes another command
+     * has made to them meanwhile are kept, as Refs.merge describes, and
+     * become part of this tree.
+     * @param refs The refs to write
+     */
+    void save(Refs refs) {
+        if (refs.equals(_saved)) {
+            return;
+        }
+        Refs merged = refs;
+        Refs.lock();
+        try {
+            Refs disk = Refs.FILE.isFile() ? Refs.read() : null;
+            if (disk != null && _saved != null && !disk.equals(_saved)) {
+                merged = refs.merge(_saved, disk);
+            }
+            if (!merged.equals(disk)) {
+                merged.write();
+            }
+        } finally {
+            Refs.unlock();
+        }
+        if (merged.equals(refs)) {
+            _saved = refs;
+        } else {
+            setRefs(merged);
+        }
+    }
+    
+    /**Removes the objects that neither the head nor the staged files of
+     * any branch refer to, keeping those written in the last GRACE
+     * milliseconds. The branches are saved first, so that a command run
+     * meanwhile sees the same branches the collection started from.
+     * @param grace The grace period, in milliseconds
+     */
+    void gc(long grace) {
+        save();
+        ArrayList<ObjectId> heads = new ArrayList<ObjectId>();
+        ArrayList<ObjectId> staged = new ArrayList<ObjectId>();
+        for (Refs.Ref ref: _saved.refs()) {
+            heads.add(ref.head);
+            staged.add(ref.staged);
+        }
+        GarbageCollector.collect(heads, staged, grace);
+    }
     
     /**Adds a file to the staging area. Assumes file exists.
      * @param file File to be staged.
@@ -35,12 +144,20 @@ public class Tree implements Serializable {
     void add(File file){
         current.stage(file);
     }
+
+    /**Adds many snapshots to the staging area in one batch.
+     * @param blobs Blobs to be staged.
+     */
+    void addAll(Collection<Blob> blobs){
+        current.workingCommit.addAll(blobs);
+    }
     
     /**Remove a file from staging area. Assumes file exists.
      * @param file File to be removed from staging area.
      */
     void remove(File file) {
         current.remove(file);
+        StatCache.get().remove(Blob.nameOf(file));
     }
     
     /**Adds the designated branch to the tree.
@@ -57,6 +174,20 @@ public class Tree implements Serializable {
         }
     }
 
+    /**Points the branch NAME at the commit HEAD, creating the branch
+     * if there is none, as fetch does for the branches it copies.
+     * @param name Name of branch.
+     * @param head The id of its new head
+     */
+    void setBranch(String name, ObjectId head) {
+        int index = containsBranch(name);
+        if (index == -1) {
+            branches.add(new Branch(Commit.read(head), name));
+        } else {
+            branches.get(index).moveHead(Commit.read(head));
+        }
+    }
+
     /**
      * Removes the designated branch from the tree.
      * @param name Name of branch.
@@ -96,15 +227,40 @@ public class Tree implements Serializable {
     }
 
     /**
-     * Checks out the current branch, changes the  head.
+     * Checks out all the files of the given commit and moves the head of
+     * the current branch to it.
+     * @param commitID Full or abbreviated id of the commit
+     */
+    void reset(String commitID) {
+        Commit commit = findCommit(commitID);
+        new Checkout(current.head.getBlobs(), commit.getBlobs()).run();
+        current.moveHead(commit);
+    }
+
+    /**
+     * Returns the commit with the given id, from any branch, looked up in
+     * the global commit index.
+     * @param commitID Full or abbreviated id of the commit
+     * @return The commit
+     */
+    Commit findCommit(String commitID) {
+        return Commit.read(CommitIndex.get().resolve(commitID));
+    }
+
+    /**
+     * Checks out the given branch, which becomes the current branch.
+     * Only the files that differ between the two branch heads are
+     * written or deleted.
      * @param branchName Name of the branch
-     * @return A list of all of the blobs of files that is most recent
-     * for the that branch. All files that can be used wto be overwritten.
      */
-    ArrayList<Blob> checkoutBranch (String branchName) {
+    void checkoutBranch (String branchName) {
         Branch b = findBranch(branchName);
+        if (b == current) {
+            throw new IllegalArgumentException("No need to checkout the "
+                    + "current branch.");
+        }
+        new Checkout(current.head.getBlobs(), b.head.getBlobs()).run();
         current = b;
-        return b.currentFiles();
     }
     
     /**
@@ -115,80 +271,30 @@ public class Tree implements Serializable {
     void merge(String branchName) {
         Branch branch = findBranch(branchName);
         Commit splitPoint = splitPoint (branch);
-        ArrayList<Blob> curBlobs = current.currentFiles();
-        ArrayList<Blob> otherBlobs = branch.currentFiles();
         if (splitPoint.equals(branch.head)){
             return;
         }else if (splitPoint.equals(current.head)) {
-            current.workingCommit = branch.head;
-            current.addCommit(current.workingCommit.getMessage()); /*----CHECKOUT----**/
+            new Checkout(current.head.getBlobs(), branch.head.getBlobs()).run();
+            current.moveHead(branch.head);
             return;
         }
-        
-        ArrayList<Blob> splittoCurrentMods = splitPoint.modifiedFiles(current.head);
-        ArrayList<Blob> splittoOtherMods = splitPoint.modifiedFiles(branch.head);
-        
-        /*Takes care of modifications made in the other branch, but not in my current branch */
-        for (Blob blob: splittoOtherMods) {
-            if (!contains(blob, splittoCurrentMods)) {
-                current.workingCommit.add(blob);
-            }
-        }
-        ArrayList<Blob> splittoCurrentAdds = splitPoint.addedFiles(current.head);
-        ArrayList<Blob> splittoOtherAdds = splitPoint.addedFiles(branch.head);
-        HashMap<Blob, Blob> moreConflicts = new HashMap<Blob, Blob>();
-        
-        /*If a new file was added to the other branch since the split, it is either  noted as a conflict if
-         * also present in my current branch, or is added to the commit. */
-        for (Blob addition: splittoOtherAdds) {
-            if (!contains(addition, splittoCurrentAdds)) {
-                current.workingCommit.add(addition);
-            } else {
-                moreConflicts.put(get(addition.getName(), splittoCurrentAdds), addition);
-            }
-        }
-        
-        /*If a file has been deleted in the other branch, and is remains unmodified in the current branch,
-         * then remove's the file from my current staging area. If a modification was made in the current branch but
-         * is absent in the other branch, then the other branch's removed file is treated as an empty file, and added to the 
-         * list of conflicts. 
-         */
-        ArrayList<Blob> splittoOtherDels = splitPoint.deletedFiles(branch.head); 
-        for (Blob otherDeleted: splittoOtherDels) {
-            if (!contains(otherDeleted, splittoCurrentMods)) {
-                current.remove(otherDeleted);
-            } else {
-                moreConflicts.put(get(otherDeleted.getName(), splittoCurrentMods), 
-                        new Blob(otherDeleted.getName(), new File(otherDeleted.getName())));
-            }
-        }
-        
-        /* If the files in the current directory have been deleted  since split but have been
-         * modified, add to the conflict list. Else, continue on with process.
-         */
-        ArrayList<Blob> splittoCurrentDels = splitPoint.deletedFiles(current.head); 
-        for (Blob currentDeleted: splittoCurrentDels) {
-            if (!contains(currentDeleted, splittoOtherMods)) {
-                continue;
-            } else {
-                moreConflicts.put(currentDeleted, 
-                        new Blob(currentDeleted.getName(), new File(currentDeleted.getName())));
-            }
-        }
-        
-        /*If there are two new files, and both have different version, or there have been conflicts acquired from
-         * any of the processes above, program will write the corresponding files with a formatted error version, 
-         * and return from program without committing */
-        if (inConflictModifications (splittoCurrentMods, splittoOtherMods) || !moreConflicts.isEmpty()) {
-            if (inConflictModifications (splittoCurrentMods, splittoOtherMods)) {
-                writeConflicts (conflictingFiles (splittoCurrentMods, splittoOtherMods));
-            }
-            if (!moreConflicts.isEmpty()) {
-                writeConflicts(moreConflicts);
-            }
+
+        MergeEngine engine = new MergeEngine(splitPoint.getBlobs(),
+                current.head.getBlobs(), branch.head.getBlobs());
+        Manifest merged = new Manifest(current.head.getBlobs());
+        engine.apply(merged);
+        Checkout checkout = new Checkout(current.head.getBlobs(), merged);
+        engine.apply(current.workingCommit.getBlobs());
+        checkout.run();
+
+        /*If both branches changed a file in different ways, program will write the corresponding
+         * files with a formatted error version, and return from program without committing */
+        if (engine.hasConflicts()) {
+            writeConflicts(engine.changes());
             System.out.println("Encountered a merge conflict.");
             return;
         }
+        current.workingCommit.setMergeParent(branch.head);
         current.addCommit("Merged " + current.name + " with " + branchName);
     }
     
@@ -200,45 +306,95 @@ public class Tree implements Serializable {
      * =======
      * contents of file in given branch
      * >>>>>>>
-     * @param conflicts A HashMap of conflicts that maps the current branch's version of the file
-     * to the other branch's version of the file. 
+     * A version that is absent on one side is treated as an empty file.
+     * @param changes The changes of a merge, of which only the conflicts are written.
      */
-    void writeConflicts (HashMap<Blob, Blob> conflicts) {
-        Set<Blob> keys = conflicts.keySet();
-        byte[] firstLine = new String("<<<<<<< HEAD").getBytes();
-        byte[] thirdLine = new String("=======").getBytes();
-        byte[] fifthLine = new String(">>>>>>>").getBytes();
-        byte[] finalLine = System.getProperty("line.separator").getBytes();
-        for (Blob key: keys) {
-            byte[] currentFileContents = key.getBytes(); //assumes that the blob ends with a new line
-            byte[] fourthLine = conflicts.get(key).getBytes();
-            byte[] finalContents = new byte[firstLine.length 
-                                            + currentFileContents.length + thirdLine.length
-                                            + fourthLine.length + fifthLine.length + finalLine.length];
-            System.arraycopy(firstLine, 0, finalContents, 0, firstLine.length);
-            int index = firstLine.length;
-            System.arraycopy(currentFileContents, 0, finalContents, index, currentFileContents.length);
-            index += currentFileContents.length;
-            System.arraycopy(thirdLine, 0, finalContents, index, thirdLine.length);
-            index += thirdLine.length;
-            System.arraycopy(fourthLine, 0, finalContents, index, fourthLine.length);
-            index += fourthLine.length;
-            System.arraycopy(fifthLine, 0, finalContents, index, fifthLine.length);
-            index += fifthLine.length;
-            System.arraycopy(finalLine, 0, finalContents, index, finalLine.length);
-            
-            Utils.writeContents(new File(key.getName()), finalContents);
-
+    void writeConflicts (ArrayList<MergeEngine.Change> changes) {
+        byte[] separator = System.getProperty("line.separator").getBytes();
+        for (MergeEngine.Change change: changes) {
+            if (change.action != MergeEngine.Action.CONFLICT) {
+                continue;
+            }
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            contents.write(CONFLICT_HEAD, 0, CONFLICT_HEAD.length);
+            contents.write(separator, 0, separator.length);
+            if (change.ours != null) {
+                byte[] ours = change.ours.getBytes(); //assumes that the blob ends with a new line
+                contents.write(ours, 0, ours.length);
+            }
+            contents.write(CONFLICT_MIDDLE, 0, CONFLICT_MIDDLE.length);
+            contents.write(separator, 0, separator.length);
+            if (change.theirs != null) {
+                byte[] theirs = change.theirs.getBytes();
+                contents.write(theirs, 0, theirs.length);
+            }
+            contents.write(CONFLICT_TAIL, 0, CONFLICT_TAIL.length);
+            contents.write(separator, 0, separator.length);
+            Utils.writeContents(new File(change.name), contents.toByteArray());
         }
     }
     
-    @Override
-    public String toString() {
-        String holder = "";
+    /**
+     * Returns the status of the repository: the branches, the files staged
+     * for addition or removal, the tracked files changed in the working
+     * directory since they were staged, and the untracked files. Working
+     * files are only rehashed if their stat data have changed.
+     * @return The status report
+     */
+    String status() {
+        Manifest staged = current.workingCommit.getBlobs();
+        Manifest head = current.head.getBlobs();
+        StringBuilder out = new StringBuilder();
+
+        out.append("=== Branches ===\n");
+        ArrayList<String> names = new ArrayList<String>();
         for (Branch b: branches) {
-            holder += b.toString();
+            names.add(b.name);
+        }
+        Collections.sort(names);
+        for (String name: names) {
+            out.append(name.equals(current.name) ? "*" : "").append(name).append("\n");
+        }
+
+        final StringBuilder added = new StringBuilder();
+        final StringBuilder removed = new StringBuilder();
+        Manifest.walk(new Manifest[] {head, staged}, new Manifest.Visitor() {
+            public boolean skip(ObjectId[] ids) {
+                return ids[0] == null ? ids[1] == null : ids[0].equals(ids[1]);
+            }
+
+            public void visit(String name, Blob[] blobs) {
+                (blobs[1] == null ? removed : added).append(name).append("\n");
+            }
+        });
+        out.append("\n=== Staged Files ===\n").append(added);
+        out.append("\n=== Removed Files ===\n").append(removed);
+
+        out.append("\n=== Modifications Not Staged For Commit ===\n");
+        for (Blob b: staged) {
+            File file = new File(b.getName());
+            if (!file.isFile()) {
+                out.append(b.getName()).append(" (deleted)\n");
+            } else if (!StatCache.get().hash(file).equals(b.getSHA())) {
+                out.append(b.getName()).append(" (modified)\n");
+            }
         }
-        return holder;
+
+        out.append("\n=== Untracked Files ===\n");
+        for (String name: BulkAdd.workingFiles()) {
+            if (!staged.contains(name)) {
+                out.append(name).append("\n");
+            }
+        }
+        return out.toString();
+    }
+
+    /**Returns a lazy walk over the global log: every commit ever made,
+     * last written first, in the order they were written to the commit
+     * graph.
+     * @return The walk */
+    History history() {
+        return History.all();
     }
     
     @Override
@@ -255,83 +411,20 @@ public class Tree implements Serializable {
     /*==============================PRIVATE METHODS===========================================*/
 
     /**
-     * Returns whether a blob with the given name exists within the 
-     * given list of blobs.
-     * @param blob Blob that is to be searched for.
-     * @param list List of blobs
-     * @return Whether the blob exists in the list
-     */
-    private boolean contains(Blob blob, ArrayList<Blob> list) {
-        for (Blob b: list) {
-            if (blob.getName().equals(b.getName())) {
-                return true;
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Returns the a blob in the given list with the corresponding name.
-     * Assumes that there exists such a blob, else an error is thrown.
-     * @param blobName Name of the blob.
-     * @param blobs The list of blobs to find it from.
-     * @return The corresponding blob with the given name.
-     */
-    private Blob get(String blobName, ArrayList<Blob> blobs) {
-        for (Blob b: blobs) {
-            if (b.getName().equals(blobName)) {
-                return b;
-            }
-        }
-        throw new IllegalArgumentException ("Does not exist");
-    }
-
-
-
-    /**
-     * Returns a HashMap linking the current branch file version to the other branch's file version.
-     * This assumes that there exist conflicts. 
-     * @param cur The modifications made from split point to the current branch's recent commit.
-     * @param other The modifications made from split point to the other branch's recent commit.
-     * @return HashMap linking the conflicting files, from current branch's file version to other
-     * branch's file version. 
-     */
-    private HashMap<Blob, Blob> conflictingFiles (ArrayList<Blob> cur, ArrayList<Blob> other) {
-        HashMap<Blob, Blob> conflicts = new HashMap<Blob, Blob>();
-        for (Blob cblob: cur) {
-            if (contains(cblob, other)) {
-                conflicts.put(cblob, get(cblob.getName(), other));
-            }
-        }
-        return conflicts;
-    }
-
-    /**
-     * Returns whether two lists have any files that are in conflict.
-     * @param b1 List of one branches modified files from split point
-     * @param b2 List of the other branches modified files from split point
-     * @return Whether the two lists have files in common 
-     */
-    private boolean inConflictModifications(ArrayList<Blob> b1, ArrayList<Blob> b2) {
-        for (Blob b: b1) {
-            if (contains (b, b2)) {
-                return true;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * Returns the split point of the provided branch and the current branch.
+     * Returns the split point of the provided branch and the current branch,
+     * which is their latest common ancestor in the commit graph.
+     * Throws IllegalArgumentException if the two share no commit.
      * @param branch The branch to be compared to. Not necessarily before the current branch.
      * @return Commit that is the split point
      */
     private Commit splitPoint (Branch branch) {
-        if (current.compareTo(branch) < 0) {
-            return branch.parent;
-        } else {
-            return current.parent;
+        ObjectId id = CommitGraph.get().mergeBase(current.head.getSHA(),
+                branch.head.getSHA());
+        if (id == null) {
+            throw new IllegalArgumentException("The branches share no "
+                    + "history.");
         }
+        return Commit.read(id);
     }
 
     /**
@@ -367,16 +460,15 @@ public class Tree implements Serializable {
      * @param name Name of file
      * @return Blob of the tree*/
     private Blob findBlob(String name){
-        return findBlob(name, current.head.getSHA());
+        return current.head.find(name);
     }
 
     /**Returns the designated blob from the tree form the specified commit.
-     * This is restricted to the current branch. 
      * @param name Name of file
+     * @param commitID Full or abbreviated id of the commit
      * @return Blob of the tree*/
     private Blob findBlob(String name, String commitID){
-        Commit com = current.find(name);
-        return com.find(name);
+        return findCommit(commitID).find(name);
     }
     
 }
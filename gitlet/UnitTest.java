@@ -5,6 +5,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -19,6 +22,47 @@ public class UnitTest {
         textui.runClasses(UnitTest.class);
     }
 
+    /** Returns a made-up object id standing for the contents TEXT. */
+    private static ObjectId id(String text) {
+        return Utils.hash(text);
+    }
+
+    /** Runs gitlet with the arguments ARGS in the directory DIR, as a
+     *  separate process, and returns what it printed. */
+    private static String gitlet(File dir, String... args) {
+        String[] command = new String[args.length + 4];
+        command[0] = new File(new File(System.getProperty("java.home"),
+                                       "bin"), "java").getPath();
+        command[1] = "-cp";
+        command[2] = System.getProperty("java.class.path");
+        command[3] = Main.class.getName();
+        System.arraycopy(args, 0, command, 4, args.length);
+        try {
+            Process process = new ProcessBuilder(command).directory(dir)
+                .redirectErrorStream(true).start();
+            String output = new String(
+                process.getInputStream().readAllBytes());
+            process.waitFor();
+            return output;
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Test
+    public void testObjectId () {
+        ObjectId a = Utils.hash("contents");
+        ObjectId b = ObjectId.fromHex(a.toString());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(Utils.sha1("contents"), a.toString());
+        assertEquals(a, ObjectId.fromBytes(a.toBytes(), 0));
+        ObjectId low = ObjectId.fromHex("00ff" + a.toString().substring(4));
+        ObjectId high = ObjectId.fromHex("ff00" + a.toString().substring(4));
+        assertTrue(low.compareTo(high) < 0);
+        assertEquals(0xff, high.firstByte());
+    }
+
     @Test
     public void testBlob () {
         File file = new File("test.txt");
@@ -54,9 +98,206 @@ public class UnitTest {
         System.out.println(d.toString());
         assertEquals("initial commit", c.getMessage());
         assertTrue(c.contains("test.txt"));
-        assertTrue(d.equals(c));
+        assertEquals(c.getBlobs(), d.getBlobs());
     }
 
-}
+    @Test
+    public void testManifest () {
+        Manifest m = new Manifest();
+        m.add(new Blob("b.txt", id("22")));
+        m.add(new Blob("a.txt", id("11")));
+        m.add(new Blob("c.txt", id("33")));
+        m.add(new Blob("b.txt", id("44")));
+        assertTrue(m.remove("c.txt"));
+        assertFalse(m.remove("c.txt"));
+        assertEquals(2, m.size());
+        assertEquals(id("44"), m.find("b.txt").getSHA());
+        assertEquals("a.txt", m.sorted()[0].getName());
+        m.write();
+        Manifest copy = Manifest.read(m.id());
+        assertEquals(m, copy);
+        assertEquals("b.txt", copy.sorted()[1].getName());
+        assertEquals(id("44"), copy.find("b.txt").getSHA());
+
+        Manifest other = new Manifest();
+        other.add(new Blob("b.txt", id("44")));
+        other.add(new Blob("a.txt", id("11")));
+        assertEquals(m.id(), other.id());
+        other.add(new Blob("d.txt", id("55")));
+        assertFalse(m.id().equals(other.id()));
+        other.remove("d.txt");
+        assertEquals(m.id(), other.id());
+
+        Manifest tree = new Manifest();
+        tree.add(new Blob("src/main/A.java", id("66")));
+        tree.add(new Blob("src/test/B.java", id("77")));
+        tree.add(new Blob("README", id("88")));
+        assertEquals("README", tree.sorted()[0].getName());
+        assertEquals(id("77"), tree.find("src/test/B.java").getSHA());
+        assertNull(tree.find("src/test"));
+        Manifest changed = new Manifest(tree);
+        changed.add(new Blob("src/main/A.java", id("99")));
+        assertFalse(tree.id().equals(changed.id()));
+        assertTrue(changed.remove("src/main/A.java"));
+        assertTrue(tree.remove("src/main/A.java"));
+        assertEquals(tree.id(), changed.id());
+    }
+
+    @Test
+    public void testPersistentMap () {
+        PersistentMap<String> empty = PersistentMap.empty();
+        PersistentMap<String> m = empty;
+        for (int i = 0; i < 100; i += 1) {
+            m = m.put("key" + i, "v" + i);
+        }
+        PersistentMap<String> changed = m.put("key5", "new").remove("key7");
+        assertEquals("v5", m.get("key5"));
+        assertEquals("v7", m.get("key7"));
+        assertEquals("new", changed.get("key5"));
+        assertNull(changed.get("key7"));
+        assertEquals(100, m.size());
+        assertEquals(99, changed.size());
+        assertSame(m, m.remove("missing"));
+        assertTrue(empty.isEmpty());
+        String previous = "";
+        for (Map.Entry<String, String> e : changed) {
+            assertTrue(previous.compareTo(e.getKey()) < 0);
+            previous = e.getKey();
+        }
+    }
+
+    @Test
+    public void testMergeEngine () {
+        Manifest base = new Manifest(), ours = new Manifest(),
+            theirs = new Manifest();
+        base.add(new Blob("same.txt", id("1")));
+        base.add(new Blob("ours.txt", id("2")));
+        base.add(new Blob("theirs.txt", id("3")));
+        base.add(new Blob("gone.txt", id("4")));
+        base.add(new Blob("both.txt", id("5")));
+        ours.add(new Blob("same.txt", id("1")));
+        ours.add(new Blob("ours.txt", id("20")));
+        ours.add(new Blob("theirs.txt", id("3")));
+        ours.add(new Blob("gone.txt", id("4")));
+        ours.add(new Blob("both.txt", id("50")));
+        theirs.add(new Blob("same.txt", id("1")));
+        theirs.add(new Blob("ours.txt", id("2")));
+        theirs.add(new Blob("theirs.txt", id("30")));
+        theirs.add(new Blob("both.txt", id("51")));
+        theirs.add(new Blob("new.txt", id("6")));
+        MergeEngine engine = new MergeEngine(base, ours, theirs);
+        String actions = "";
+        for (MergeEngine.Change c : engine.changes()) {
+            actions += c.name + "=" + c.action + " ";
+        }
+        assertEquals("both.txt=CONFLICT gone.txt=DELETE new.txt=TAKE_THEIRS "
+            + "theirs.txt=TAKE_THEIRS ", actions);
+        assertTrue(engine.hasConflicts());
+    }
 
+    @Test
+    public void testDelta () {
+        String text = "";
+        for (int i = 0; i < 200; i += 1) {
+            text += "line " + i + " of the base version\n";
+        }
+        byte[] base = text.getBytes();
+        byte[] target = ("new first line\n" + text.replace("line 100 ", "LINE 100 ")
+                         + "and a new last line\n").getBytes();
+        byte[] delta = Delta.create(base, target);
+        assertTrue(delta.length < target.length / 10);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        assertArrayEquals(base, Delta.apply(target, Delta.create(target, base)));
+        assertArrayEquals(new byte[0], Delta.apply(base, Delta.create(base, new byte[0])));
+    }
+
+    @Test
+    public void testRepackTwice () {
+        HashMap<ObjectId, byte[]> stored = new HashMap<ObjectId, byte[]>();
+        for (int i = 0; i < 20; i += 1) {
+            byte[] contents = ("version " + i + " of a file\n").getBytes();
+            ObjectStore.write(Utils.hash(contents), contents);
+        }
+        for (ObjectId id : ObjectStore.looseIDs()) {
+            stored.put(id, ObjectStore.read(id));
+        }
+        PackWriter.repack();
+        PackWriter.repack();
+        ObjectStore.reloadPacks();
+        assertEquals(0, ObjectStore.looseIDs().size());
+        assertEquals(1, ObjectStore.packs().size());
+        for (Map.Entry<ObjectId, byte[]> e : stored.entrySet()) {
+            assertArrayEquals(e.getValue(), ObjectStore.read(e.getKey()));
+        }
+    }
+
+    @Test
+    public void testFetchAndPush () throws IOException {
+        File base = Files.createTempDirectory("remotes").toFile();
+        File a = new File(base, "a"), b = new File(base, "b");
+        a.mkdir();
+        b.mkdir();
+        gitlet(a, "init");
+        gitlet(b, "init");
+        Utils.writeContents(new File(a, "f.txt"), "one\n".getBytes());
+        gitlet(a, "add", "f.txt");
+        gitlet(a, "commit", "one");
+        gitlet(a, "branch", "side");
+
+        gitlet(b, "add-remote", "origin",
+               new File(a, ".gitlet").getAbsolutePath());
+        assertEquals("", gitlet(b, "fetch", "origin", "master"));
+        assertEquals("", gitlet(b, "merge", "origin/master"));
+        assertArrayEquals("one\n".getBytes(),
+                          Utils.readContents(new File(b, "f.txt")));
 
+        Utils.writeContents(new File(b, "g.txt"), "two\n".getBytes());
+        gitlet(b, "add", "g.txt");
+        gitlet(b, "commit", "two");
+        assertEquals("The remote branch is checked out there.\n",
+                     gitlet(b, "push", "origin", "master"));
+        assertEquals("", gitlet(b, "push", "origin", "side"));
+        gitlet(a, "checkout", "side");
+        assertArrayEquals("two\n".getBytes(),
+                          Utils.readContents(new File(a, "g.txt")));
+    }
+
+    @Test
+    public void testBatchSplit () {
+        assertArrayEquals(new String[] {"add", "a.txt", "b.txt"},
+                          Batch.split("  add a.txt\tb.txt "));
+        assertArrayEquals(new String[] {"commit", "a \"quoted\" message"},
+                          Batch.split("commit \"a \\\"quoted\\\" message\""));
+        assertArrayEquals(new String[] {"commit", "it's", ""},
+                          Batch.split("commit it\"'\"s ''"));
+        assertEquals(0, Batch.split("# a comment").length);
+        assertEquals(0, Batch.split("   ").length);
+    }
+
+    @Test
+    public void testBitmap () {
+        Bitmap a = new Bitmap();
+        for (int i = 0; i < 10000; i += 1) {
+            a.set(i);
+        }
+        a.set(20000);
+        a.set(20063);
+        byte[] stored = a.toBytes();
+        assertTrue(stored.length < 100);
+        Bitmap b = Bitmap.read(java.nio.ByteBuffer.wrap(stored));
+        assertEquals(a, b);
+        assertEquals(10002, b.cardinality());
+
+        Bitmap c = new Bitmap();
+        c.set(5);
+        c.set(20063);
+        c.set(30000);
+        Bitmap diff = c.copy().andNot(a);
+        assertEquals(1, diff.cardinality());
+        assertEquals(30000, diff.nextSetBit(0));
+        assertEquals(-1, diff.nextSetBit(30001));
+        assertEquals(10003, a.copy().or(c).cardinality());
+        assertEquals(c, Bitmap.read(java.nio.ByteBuffer.wrap(c.toBytes())));
+    }
+
+}
@@ -3,12 +3,15 @@ package gitlet;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -19,36 +22,122 @@ class Utils {
 
     /* SHA-1 HASH VALUES. */
 
-    /** Returns the SHA-1 hash of the concatenation of VALS, which may
+    /** Size of the buffer through which files are hashed. */
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    /** The digest and buffers with which one thread hashes. They are
+     *  kept from call to call, so hashing allocates almost nothing. */
+    private static final class Hasher {
+        /** A SHA-1 digest. */
+        final MessageDigest md;
+        /** Receives each digest. */
+        final byte[] out = new byte[ObjectId.SIZE];
+        /** Holds each block of a file being hashed. */
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+
+        Hasher() {
+            try {
+                md = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException(
+                    "System does not support SHA-1");
+            }
+        }
+
+        /** Returns the id of what has been hashed, and resets md. */
+        ObjectId finish() {
+            try {
+                md.digest(out, 0, out.length);
+            } catch (DigestException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return ObjectId.fromBytes(out, 0);
+        }
+    }
+
+    /** The hasher of each thread. */
+    private static final ThreadLocal<Hasher> HASHERS =
+        ThreadLocal.withInitial(Hasher::new);
+
+    /** Returns the SHA-1 id of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
-    static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+    static ObjectId hash(Object... vals) {
+        Hasher hasher = HASHERS.get();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                hasher.md.update((byte[]) val);
+            } else if (val instanceof String) {
+                hasher.md.update(
+                    ((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                hasher.md.reset();
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
+        }
+        return hasher.finish();
+    }
+
+    /** Returns the SHA-1 id of the contents of FILE, which must be a
+     *  normal file. The file is read through a fixed-size buffer, so files
+     *  of any size are hashed in bounded memory.  Throws
+     *  IllegalArgumentException in case of problems. */
+    static ObjectId hash(File file) {
+        return hash(file, null);
+    }
+
+    /** Returns the SHA-1 id of the contents of FILE, as hash(File) does,
+     *  and if COPY is not null, writes each block to COPY as it is read,
+     *  so that COPY holds exactly the contents that were hashed. */
+    static ObjectId hash(File file, FileChannel copy) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        Hasher hasher = HASHERS.get();
+        ByteBuffer buffer = hasher.buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                 StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                if (copy != null) {
+                    ByteBuffer block = buffer.duplicate();
+                    while (block.hasRemaining()) {
+                        copy.write(block);
+                    }
+                }
+                hasher.md.update(buffer);
+                buffer.clear();
             }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
+        } catch (IOException excp) {
+            hasher.md.reset();
+            throw new IllegalArgumentException(excp.getMessage());
         }
+        return hasher.finish();
+    }
+
+    /** Returns the SHA-1 hash of the concatenation of VALS, which may
+     *  be any mixture of byte arrays and Strings, in hex. */
+    static String sha1(Object... vals) {
+        return hash(vals).toString();
     }
-        
+
     /** Returns the SHA-1 hash of the concatenation of the strings in
-     *  VALS. */
+     *  VALS, in hex. */
     static String sha1(List<Object> vals) {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Returns the bytes denoted by the hex string HEX, which must have
+     *  an even number of digits. */
+    static byte[] fromHex(String hex) {
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4)
+                                | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
@@ -132,4 +221,25 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Filter out all but directories. */
+    private static final FilenameFilter DIRECTORIES =
+        new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return new File(dir, name).isDirectory();
+            }
+        };
+
+    /** Returns a list of the names of all subdirectories of the directory
+     *  DIR, in lexicographic order as Java Strings.  Returns null if DIR
+     *  does not denote a directory. */
+    static List<String> directoriesIn(File dir) {
+        String[] dirs = dir.list(DIRECTORIES);
+        if (dirs == null) {
+            return null;
+        } else {
+            Arrays.sort(dirs);
+            return Arrays.asList(dirs);
+        }
+    }
+
 }